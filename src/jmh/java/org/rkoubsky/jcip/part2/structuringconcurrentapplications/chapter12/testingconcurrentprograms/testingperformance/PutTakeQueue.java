@@ -0,0 +1,15 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+/**
+ * The common view of the benchmarked queues: timed "offer" and "poll".
+ *
+ * JMH ends an iteration only after every benchmark thread has returned from
+ * its current invocation. With untimed "put" and "take", a consumer left
+ * waiting on an empty queue after its producer stopped would block forever,
+ * so both operations give up after a timeout instead.
+ */
+public interface PutTakeQueue {
+    boolean offer(Long x, long timeoutNanos) throws InterruptedException;
+
+    Long poll(long timeoutNanos) throws InterruptedException;
+}
@@ -0,0 +1,49 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Runs {@link QueuePutTakeBenchmark} for 1 to MAX_PAIRS producer-consumer
+ * pairs, like the loops in TimedPutTakeTest.main.
+ *
+ * The thread group layout cannot be a JMH @Param, so every number of pairs
+ * is a separate JMH run. SPSC_RING_BUFFER only takes part in the run with a
+ * single pair. Any JMH command line options (e.g. "-f 1 -wi 2 -i 3" for a
+ * quick run, or "-p capacity=10") are applied to every run.
+ *
+ *     mvn -Pjmh test-compile exec:exec -Djmh.args="-f 1"
+ */
+public class QueueBenchmarkRunner {
+    private static final int MAX_PAIRS = 128;
+
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        for (int pairs = 1; pairs <= MAX_PAIRS; pairs *= 2) {
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .include(QueuePutTakeBenchmark.class.getName())
+                    .threadGroups(pairs, pairs);
+            if (pairs > 1) {
+                options.param("queue", multiProducerQueues(commandLine));
+            }
+            System.out.println("Pairs: " + pairs);
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static String[] multiProducerQueues(final CommandLineOptions commandLine) {
+        final Collection<String> requested = commandLine.getParameter("queue").hasValue()
+                ? commandLine.getParameter("queue").get()
+                : Arrays.stream(QueueType.values()).map(QueueType::name).collect(Collectors.toList());
+        return requested.stream()
+                        .filter(name -> !QueueType.SPSC_RING_BUFFER.name().equals(name))
+                        .toArray(String[]::new);
+    }
+}
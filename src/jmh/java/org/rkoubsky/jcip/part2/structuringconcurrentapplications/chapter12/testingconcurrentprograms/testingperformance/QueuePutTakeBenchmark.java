@@ -0,0 +1,118 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-consumer throughput and put-to-take latency of bounded queues
+ *
+ * The JMH version of {@link TimedPutTakeTest}. JMH takes care of what the
+ * hand-rolled harness leaves to chance: warmup iterations before the
+ * measured ones, a fresh JVM for every configuration (so the JIT decisions
+ * made for one queue do not leak into the next), and consuming the results
+ * of the benchmark methods so the JIT cannot eliminate them as dead code.
+ *
+ * The "putTake" benchmark runs one thread group in which the "put" and the
+ * "take" methods share the benchmark-wide queue. "-tg pairs,pairs" on the
+ * JMH command line sets the number of threads for each of the two methods,
+ * i.e. one group of "pairs" producers and "pairs" consumers (see
+ * {@link QueueBenchmarkRunner} for the full sweep). JMH reports the
+ * throughput of "put", "take" and both together.
+ *
+ * The producer puts the value of System.nanoTime(), and the consumer
+ * records how long ago that was into its own {@link LatencyHistogram}. The
+ * histograms of the measurement iterations are combined and their
+ * percentiles printed at the end of each fork.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class QueuePutTakeBenchmark {
+    private static final long TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Param({"SEMAPHORE_BOUNDED_BUFFER", "BLOCKING_LINKED_QUEUE", "LINKED_BLOCKING_QUEUE",
+            "ARRAY_BLOCKING_QUEUE", "MPMC_BOUNDED_BUFFER", "SPSC_RING_BUFFER"})
+    public QueueType queue;
+
+    @Param({"1", "10", "100", "1000"})
+    public int capacity;
+
+    private PutTakeQueue q;
+    private final Queue<LatencyHistogram> consumerLatencies = new ConcurrentLinkedQueue<>();
+    private final LatencyHistogram measuredLatency = new LatencyHistogram();
+
+    /**
+     * A fresh queue for every iteration, so that elements left over from the
+     * previous iteration do not show up as huge latencies in the next one
+     */
+    @Setup(Level.Iteration)
+    public void newQueue() {
+        this.q = this.queue.newQueue(this.capacity);
+    }
+
+    @TearDown(Level.Iteration)
+    public void collectLatencies(final IterationParams iteration) {
+        for (final LatencyHistogram latency : this.consumerLatencies) {
+            if (iteration.getType() == IterationType.MEASUREMENT) {
+                this.measuredLatency.add(latency);
+            }
+            latency.reset();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void reportLatencies() {
+        System.out.println();
+        System.out.println("put-to-take latency: " + this.measuredLatency.summary(TimeUnit.MICROSECONDS));
+    }
+
+    @State(Scope.Thread)
+    public static class ConsumerLatency {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        @Setup(Level.Trial)
+        public void register(final QueuePutTakeBenchmark benchmark) {
+            benchmark.consumerLatencies.add(this.histogram);
+        }
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(1)
+    public boolean put() throws InterruptedException {
+        return this.q.offer(System.nanoTime(), TIMEOUT_NANOS);
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(1)
+    public Long take(final ConsumerLatency latency) throws InterruptedException {
+        final Long sent = this.q.poll(TIMEOUT_NANOS);
+        if (sent != null) {
+            latency.histogram.record(System.nanoTime() - sent);
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,149 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.BlockingLinkedQueue;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.MpmcBoundedBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.SpscRingBuffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queues compared by {@link QueuePutTakeBenchmark}, each bounded to the
+ * requested capacity. The ring buffers round the capacity up to a power of
+ * two (MpmcBoundedBuffer to at least 2).
+ *
+ * LinkedQueue itself is unbounded and has no blocking "take", so it is
+ * measured as BLOCKING_LINKED_QUEUE, which adds the capacity bound and the
+ * waiting on top of it.
+ */
+public enum QueueType {
+    SEMAPHORE_BOUNDED_BUFFER {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            final SemaphoreBoundedBuffer<Long> bb = new SemaphoreBoundedBuffer<>(capacity);
+            return new PutTakeQueue() {
+                @Override
+                public boolean offer(final Long x, final long timeoutNanos) throws InterruptedException {
+                    return bb.offer(x, timeoutNanos, TimeUnit.NANOSECONDS);
+                }
+
+                @Override
+                public Long poll(final long timeoutNanos) throws InterruptedException {
+                    return bb.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+                }
+            };
+        }
+    },
+    BLOCKING_LINKED_QUEUE {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            return blocking(new BlockingLinkedQueue<Long>(capacity));
+        }
+    },
+    LINKED_BLOCKING_QUEUE {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            return blocking(new LinkedBlockingQueue<Long>(capacity));
+        }
+    },
+    ARRAY_BLOCKING_QUEUE {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            return blocking(new ArrayBlockingQueue<Long>(capacity));
+        }
+    },
+    MPMC_BOUNDED_BUFFER {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            final MpmcBoundedBuffer<Long> buffer = new MpmcBoundedBuffer<>(capacity);
+            return new PutTakeQueue() {
+                @Override
+                public boolean offer(final Long x, final long timeoutNanos) {
+                    final long deadline = System.nanoTime() + timeoutNanos;
+                    while (!buffer.offer(x)) {
+                        if (!idleUntil(deadline)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public Long poll(final long timeoutNanos) {
+                    final long deadline = System.nanoTime() + timeoutNanos;
+                    Long x;
+                    while ((x = buffer.poll()) == null) {
+                        if (!idleUntil(deadline)) {
+                            return null;
+                        }
+                    }
+                    return x;
+                }
+            };
+        }
+    },
+    /**
+     * Single producer and single consumer only: benchmarked with one pair
+     */
+    SPSC_RING_BUFFER {
+        @Override
+        PutTakeQueue newQueue(final int capacity) {
+            final SpscRingBuffer<Long> buffer = new SpscRingBuffer<>(capacity);
+            return new PutTakeQueue() {
+                @Override
+                public boolean offer(final Long x, final long timeoutNanos) {
+                    final long deadline = System.nanoTime() + timeoutNanos;
+                    while (!buffer.offer(x)) {
+                        if (!idleUntil(deadline)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public Long poll(final long timeoutNanos) {
+                    final long deadline = System.nanoTime() + timeoutNanos;
+                    Long x;
+                    while ((x = buffer.poll()) == null) {
+                        if (!idleUntil(deadline)) {
+                            return null;
+                        }
+                    }
+                    return x;
+                }
+            };
+        }
+    };
+
+    abstract PutTakeQueue newQueue(int capacity);
+
+    private static PutTakeQueue blocking(final BlockingQueue<Long> queue) {
+        return new PutTakeQueue() {
+            @Override
+            public boolean offer(final Long x, final long timeoutNanos) throws InterruptedException {
+                return queue.offer(x, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public Long poll(final long timeoutNanos) throws InterruptedException {
+                return queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * The ring buffers have no timed operations of their own; the adapters
+     * retry, yielding the processor in between, until the deadline passes.
+     */
+    private static boolean idleUntil(final long deadline) {
+        if (System.nanoTime() - deadline >= 0) {
+            return false;
+        }
+        Thread.yield();
+        return true;
+    }
+}
@@ -1,5 +1,7 @@
 package org.rkoubsky.jcip.part1.fundamentals.chapter5.buildingblocks.blockingqueues;
 
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.BlockingLinkedQueue;
+
 import java.io.File;
 import java.io.FileFilter;
 import java.util.concurrent.BlockingQueue;
@@ -14,13 +16,17 @@ import java.util.concurrent.LinkedBlockingQueue;
  * that does both; each of the activities has only a single task to do, and
  * the blocking queue handles all the flow control, so the code for each is
  * simpler and clearer.
+ *
+ * The crawlers and indexers only depend on the {@link BlockingQueue} interface,
+ * so the {@link LinkedBlockingQueue} can be replaced by the nonblocking
+ * {@link BlockingLinkedQueue} without touching them.
  */
 public class ProducerConsumer {
     private static final int BOUND = 10;
     private static final int N_CONSUMERS = Runtime.getRuntime().availableProcessors();
 
     public static void startIndexing(final File[] roots) {
-        final BlockingQueue<File> queue = new LinkedBlockingQueue<File>(BOUND);
+        final BlockingQueue<File> queue = new BlockingLinkedQueue<File>(BOUND);
         final FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(final File file) {
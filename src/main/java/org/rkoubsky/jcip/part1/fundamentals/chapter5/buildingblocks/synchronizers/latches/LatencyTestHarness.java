@@ -0,0 +1,198 @@
+package org.rkoubsky.jcip.part1.fundamentals.chapter5.buildingblocks.synchronizers.latches;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Using CountDownLatch for timing tests that measure latency, not just elapsed time
+ *
+ * {@link TestHarness} returns one number, the time until the last of the
+ * threads finished, which says nothing about how long an individual
+ * operation took. LatencyTestHarness uses the same starting gate and ending
+ * gate, but every worker runs the task a given number of times and records
+ * the latency of each run into its own {@link LatencyHistogram}. Nothing is
+ * shared between the workers while they run: each histogram has a single
+ * writer, so recording needs no locks or atomic instructions. The histograms
+ * are merged after the ending gate opens, which also guarantees that the
+ * master thread sees everything the workers recorded.
+ *
+ * Before the measured run, the whole test is repeated warmupIterations
+ * times and thrown away, so that the task is measured after the JIT compiled
+ * it, not while.
+ *
+ * <NOTE_coordinated_omission>
+ *
+ *     "timeTasks" is a closed-loop test: each worker starts the next
+ *     operation only when the previous one completes. If an operation
+ *     stalls for a second, the worker simply does not issue the operations
+ *     it would have issued during that second, and the stall is recorded
+ *     once instead of affecting every request that would have been waiting
+ *     behind it. The load generator coordinates with the system under test
+ *     and omits exactly the samples that would have been bad.
+ *
+ *     "timeTasksAtRate" is an open-loop test: every worker follows a fixed
+ *     schedule, one operation every intervalNanos, and the latency of an
+ *     operation is measured from the time it was scheduled to start, not
+ *     from the time it actually started. An operation that starts late
+ *     because its predecessor stalled is charged for the time it waited.
+ *
+ * </NOTE_coordinated_omission>
+ */
+public class LatencyTestHarness {
+    private final int warmupIterations;
+
+    public LatencyTestHarness(final int warmupIterations) {
+        if (warmupIterations < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.warmupIterations = warmupIterations;
+    }
+
+    /**
+     * Closed loop: each of nThreads threads runs the task nOperations times,
+     * back to back
+     */
+    public Result timeTasks(final int nThreads, final int nOperations, final Runnable task)
+            throws InterruptedException {
+        return this.measure(nThreads, nOperations, task, 0);
+    }
+
+    /**
+     * Open loop: each of nThreads threads runs the task nOperations times,
+     * one run scheduled every intervalNanos, with latencies measured from the
+     * scheduled start times
+     */
+    public Result timeTasksAtRate(final int nThreads, final int nOperations, final Runnable task,
+                                  final long intervalNanos) throws InterruptedException {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return this.measure(nThreads, nOperations, task, intervalNanos);
+    }
+
+    private Result measure(final int nThreads, final int nOperations, final Runnable task,
+                           final long intervalNanos) throws InterruptedException {
+        for (int i = 0; i < this.warmupIterations; i++) {
+            this.runOnce(nThreads, nOperations, task, intervalNanos);
+        }
+        return this.runOnce(nThreads, nOperations, task, intervalNanos);
+    }
+
+    private Result runOnce(final int nThreads, final int nOperations, final Runnable task,
+                           final long intervalNanos) throws InterruptedException {
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final CountDownLatch endGate = new CountDownLatch(nThreads);
+        final LatencyHistogram[] histograms = new LatencyHistogram[nThreads];
+
+        for (int i = 0; i < nThreads; i++) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histograms[i] = histogram;
+            final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        startGate.await();
+                        try {
+                            long scheduled = System.nanoTime();
+                            for (int n = 0; n < nOperations; n++) {
+                                final long start;
+                                if (intervalNanos > 0) {
+                                    waitUntil(scheduled);
+                                    start = scheduled;
+                                    scheduled += intervalNanos;
+                                } else {
+                                    start = System.nanoTime();
+                                }
+                                task.run();
+                                histogram.record(System.nanoTime() - start);
+                            }
+                        } finally {
+                            endGate.countDown();
+                        }
+                    } catch (final InterruptedException ignored) {
+                    }
+                }
+            };
+            t.start();
+        }
+
+        final long start = System.nanoTime();
+        startGate.countDown();
+        endGate.await();
+        final long end = System.nanoTime();
+
+        final LatencyHistogram latency = new LatencyHistogram();
+        for (final LatencyHistogram histogram : histograms) {
+            latency.add(histogram);
+        }
+        return new Result(latency, end - start);
+    }
+
+    private static void waitUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    public static class Result {
+        private final LatencyHistogram latency;
+        private final long elapsedNanos;
+
+        Result(final LatencyHistogram latency, final long elapsedNanos) {
+            this.latency = latency;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public LatencyHistogram getLatency() {
+            return this.latency;
+        }
+
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * Completed operations per second of wall-clock time
+         */
+        public double getThroughput() {
+            return this.latency.getCount() * 1e9 / this.elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("throughput=%.0f ops/s, latency %s",
+                                 this.getThroughput(), this.latency.summary(TimeUnit.MICROSECONDS));
+        }
+    }
+
+    /**
+     * A task that takes about 10 microseconds but stalls for 10 milliseconds
+     * once in every 1000 runs. The closed-loop test reports the stalls only
+     * above p99.9; the open-loop test, at the same average load, shows how
+     * many of the scheduled operations actually had to wait for them.
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final LatencyTestHarness harness = new LatencyTestHarness(2);
+        final Runnable task = new Runnable() {
+            private final ThreadLocal<int[]> runs = ThreadLocal.withInitial(() -> new int[1]);
+
+            @Override
+            public void run() {
+                final long pause = ++this.runs.get()[0] % 1000 == 0
+                        ? TimeUnit.MILLISECONDS.toNanos(10)
+                        : TimeUnit.MICROSECONDS.toNanos(10);
+                final long deadline = System.nanoTime() + pause;
+                while (System.nanoTime() < deadline) {
+                    // busy work
+                }
+            }
+        };
+        System.out.println("Closed loop: " + harness.timeTasks(2, 10000, task));
+        System.out.println("Open loop:   " + harness.timeTasksAtRate(2, 10000, task,
+                                                                    TimeUnit.MICROSECONDS.toNanos(50)));
+    }
+}
@@ -0,0 +1,255 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.amdahlslaw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Measuring the serial fraction
+ *
+ * Amdahl's law takes the serial fraction F as given, but for a real
+ * workload nobody knows it. ScalabilityAnalyzer measures the throughput of
+ * a workload on pools of 1 to maxThreads {@link WorkerThread}s and works
+ * backwards: it finds the F (called sigma below) for which Amdahl's law best
+ * matches the measured speedups.
+ *
+ * <NOTE_universal_scalability_law>
+ *
+ *     Amdahl's law only accounts for serialization, so the speedup it
+ *     predicts never decreases when threads are added. In practice it often
+ *     does: threads also have to keep shared data coherent (cache lines
+ *     bouncing between processors, lock handoffs), and that cost grows with
+ *     the number of pairs of threads. Gunther's Universal Scalability Law
+ *     adds a coherency term kappa:
+ *
+ *                                         N
+ *             C(N) =  --------------------------------------
+ *                      1 + sigma (N - 1) + kappa N (N - 1)
+ *
+ *     With kappa = 0 it is Amdahl's law. With kappa > 0 the throughput
+ *     peaks at N = sqrt((1 - sigma) / kappa) threads and then falls.
+ *
+ * </NOTE_universal_scalability_law>
+ *
+ * Both models are fitted by least squares to the linearized form
+ * N / C(N) - 1 = sigma (N - 1) + kappa N (N - 1), where C(N) is the
+ * throughput with N threads relative to the throughput with one.
+ */
+public class ScalabilityAnalyzer {
+    private final int maxThreads;
+    private final int tasksPerRun;
+    private final int trials;
+
+    public ScalabilityAnalyzer(final int maxThreads, final int tasksPerRun, final int trials) {
+        if (maxThreads < 2) {
+            throw new IllegalArgumentException("At least two pool sizes are needed to fit a model");
+        }
+        this.maxThreads = maxThreads;
+        this.tasksPerRun = tasksPerRun;
+        this.trials = trials;
+    }
+
+    /**
+     * Measures the workload on every pool size from 1 to maxThreads; the
+     * best of "trials" runs is kept for each size. The first run of each
+     * size also serves as warmup.
+     */
+    public Result analyze(final Runnable workload) throws InterruptedException {
+        final double[] throughput = new double[this.maxThreads + 1];
+        for (int n = 1; n <= this.maxThreads; n++) {
+            for (int trial = 0; trial < this.trials; trial++) {
+                throughput[n] = Math.max(throughput[n], this.measure(n, workload));
+            }
+        }
+        return new Result(throughput);
+    }
+
+    /**
+     * Tasks per second with a pool of nThreads WorkerThreads draining a queue
+     * of tasksPerRun tasks
+     */
+    private double measure(final int nThreads, final Runnable workload) throws InterruptedException {
+        final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        final CountDownLatch done = new CountDownLatch(this.tasksPerRun);
+        final Runnable task = () -> {
+            workload.run();
+            done.countDown();
+        };
+        for (int i = 0; i < this.tasksPerRun; i++) {
+            queue.add(task);
+        }
+        final List<WorkerThread> pool = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            pool.add(new WorkerThread(queue));
+        }
+        final long start = System.nanoTime();
+        for (final WorkerThread worker : pool) {
+            worker.start();
+        }
+        done.await();
+        final long elapsed = System.nanoTime() - start;
+        for (final WorkerThread worker : pool) {
+            worker.interrupt();
+        }
+        for (final WorkerThread worker : pool) {
+            worker.join();
+        }
+        return this.tasksPerRun * 1e9 / elapsed;
+    }
+
+    /**
+     * Measured throughputs and the fitted models
+     */
+    public static class Result {
+        private final double[] throughput;
+        private final double amdahlSigma;
+        private final double uslSigma;
+        private final double uslKappa;
+
+        Result(final double[] throughput) {
+            this.throughput = throughput;
+            final int maxThreads = throughput.length - 1;
+            // y = N / C(N) - 1, x1 = N - 1, x2 = N (N - 1)
+            double s11 = 0, s12 = 0, s22 = 0, s1y = 0, s2y = 0;
+            for (int n = 2; n <= maxThreads; n++) {
+                final double y = n / this.getSpeedup(n) - 1;
+                final double x1 = n - 1;
+                final double x2 = (double) n * (n - 1);
+                s11 += x1 * x1;
+                s12 += x1 * x2;
+                s22 += x2 * x2;
+                s1y += x1 * y;
+                s2y += x2 * y;
+            }
+            this.amdahlSigma = clamp(s1y / s11);
+            final double det = s11 * s22 - s12 * s12;
+            double sigma = (s1y * s22 - s2y * s12) / det;
+            double kappa = (s2y * s11 - s1y * s12) / det;
+            // Two pool sizes cannot determine two coefficients, and negative
+            // coefficients have no physical meaning: refit with that term dropped
+            if (det <= 0 || kappa < 0) {
+                kappa = 0;
+                sigma = s1y / s11;
+            } else if (sigma < 0) {
+                sigma = 0;
+                kappa = s2y / s22;
+            }
+            this.uslSigma = clamp(sigma);
+            this.uslKappa = Math.max(0, kappa);
+        }
+
+        private static double clamp(final double fraction) {
+            return Math.max(0, Math.min(1, fraction));
+        }
+
+        public int getMaxThreads() {
+            return this.throughput.length - 1;
+        }
+
+        public double getThroughput(final int nThreads) {
+            return this.throughput[nThreads];
+        }
+
+        /**
+         * Measured throughput relative to the throughput of a single thread
+         */
+        public double getSpeedup(final int nThreads) {
+            return this.throughput[nThreads] / this.throughput[1];
+        }
+
+        /**
+         * The serial fraction F of Amdahl's law
+         */
+        public double getAmdahlSigma() {
+            return this.amdahlSigma;
+        }
+
+        public double getUslSigma() {
+            return this.uslSigma;
+        }
+
+        public double getUslKappa() {
+            return this.uslKappa;
+        }
+
+        public double predictAmdahl(final int nThreads) {
+            return nThreads / (1 + this.amdahlSigma * (nThreads - 1));
+        }
+
+        public double predictUsl(final int nThreads) {
+            return nThreads / (1 + this.uslSigma * (nThreads - 1) + this.uslKappa * nThreads * (nThreads - 1));
+        }
+
+        /**
+         * The thread count with the highest speedup predicted by the USL, or
+         * Integer.MAX_VALUE if the fit found no coherency cost
+         */
+        public double getPeakThreads() {
+            return this.uslKappa == 0 ? Integer.MAX_VALUE : Math.sqrt((1 - this.uslSigma) / this.uslKappa);
+        }
+
+        /**
+         * Recommended pool size for a host with the given number of
+         * processors: the thread count up to "processors" with the highest
+         * predicted speedup, except that a thread is only worth adding if it
+         * adds at least minGain (e.g. 0.05 for 5%) of one thread's throughput
+         */
+        public int recommendThreads(final int processors, final double minGain) {
+            int best = 1;
+            for (int n = 2; n <= processors; n++) {
+                if (this.predictUsl(n) - this.predictUsl(best) < minGain * (n - best)) {
+                    continue;
+                }
+                best = n;
+            }
+            return best;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append("Threads\tthroughput (tasks/s)\tspeedup\tAmdahl\tUSL\n");
+            for (int n = 1; n <= this.getMaxThreads(); n++) {
+                sb.append(String.format("%d\t%.0f\t%.2f\t%.2f\t%.2f%n", n, this.throughput[n],
+                                        this.getSpeedup(n), this.predictAmdahl(n), this.predictUsl(n)));
+            }
+            sb.append(String.format("Amdahl: serial fraction %.4f (speedup limit %.1f)%n",
+                                    this.amdahlSigma, 1 / Math.max(this.amdahlSigma, 1e-9)));
+            sb.append(String.format("USL: serial fraction %.4f, coherency %.6f, %s%n",
+                                    this.uslSigma, this.uslKappa,
+                                    this.uslKappa == 0 ? "no peak"
+                                            : String.format("peak at %.1f threads", this.getPeakThreads())));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A workload that spends most of its time computing on its own and a
+     * small part in a block synchronized on a shared lock
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final Object lock = new Object();
+        final long[] shared = new long[1];
+        final Runnable workload = () -> {
+            long x = System.nanoTime();
+            for (int i = 0; i < 2000; i++) {
+                x ^= x << 13;
+                x ^= x >>> 7;
+                x ^= x << 17;
+            }
+            synchronized (lock) {
+                for (int i = 0; i < 100; i++) {
+                    shared[0] += x + i;
+                }
+            }
+        };
+        final ScalabilityAnalyzer analyzer = new ScalabilityAnalyzer(Math.max(4, 2 * processors), 20000, 3);
+        final Result result = analyzer.analyze(workload);
+        System.out.print(result);
+        System.out.printf("Recommended pool size for this host (%d processors): %d%n",
+                          processors, result.recommendThreads(processors, 0.05));
+    }
+}
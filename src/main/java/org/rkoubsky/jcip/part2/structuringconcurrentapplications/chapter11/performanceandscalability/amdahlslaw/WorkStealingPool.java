@@ -0,0 +1,213 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.amdahlslaw;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Removing the shared work queue with per-worker deques and work stealing
+ *
+ * In a pool of {@link WorkerThread}s every task passes through the one
+ * shared queue, so fetching the next task is the serial fraction that
+ * limits the speedup. WorkStealingPool gives every worker its own deque
+ * instead:
+ *
+ *  - a task submitted by a worker goes to the head of that worker's own
+ *    deque, and the worker takes its next task from the same end, so a
+ *    worker that keeps generating work (e.g. splitting a problem into
+ *    subproblems) never touches anybody else's data
+ *  - a worker whose deque is empty steals from the tail of another
+ *    worker's deque. The owner and the thief work at opposite ends, so
+ *    they rarely contend, and the tail holds the oldest tasks, which in a
+ *    divide-and-conquer workload are the largest ones
+ *  - a task submitted from outside the pool goes to the tail of the deques
+ *    in turn
+ *
+ * Contention is now limited to the moments when a worker runs out of work,
+ * instead of happening on every task.
+ *
+ * A worker that finds no task anywhere registers in "idleWorkers" and
+ * parks. "execute" wakes one registered worker after publishing a task.
+ * The worker scans the deques once more after registering, so a task
+ * published between its last scan and its registration is not missed:
+ * either the worker sees the task, or the submitter sees the registration.
+ *
+ * Shutdown uses the same handshake. A submitter checks "shutdown" again
+ * after publishing its task; if the pool has been shut down meanwhile, it
+ * takes the task back and rejects it, unless a worker has already taken
+ * it. A worker that sees "shutdown" scans all deques once more before it
+ * exits. So a task whose submitter saw the pool still running after
+ * publishing it is found by that last scan.
+ */
+@ThreadSafe
+public class WorkStealingPool implements Executor {
+    private final Worker[] workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    public WorkStealingPool(final int nThreads) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.workers = new Worker[nThreads];
+        for (int i = 0; i < nThreads; i++) {
+            this.workers[i] = new Worker(i);
+        }
+        for (final Worker worker : this.workers) {
+            worker.start();
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (this.shutdown) {
+            throw new RejectedExecutionException("Pool has been shut down");
+        }
+        final Thread current = Thread.currentThread();
+        final ConcurrentLinkedDeque<Runnable> deque;
+        if (current instanceof Worker && ((Worker) current).pool() == this) {
+            deque = ((Worker) current).deque;
+            deque.offerFirst(task);
+        } else {
+            final int index = Math.floorMod(this.nextWorker.getAndIncrement(), this.workers.length);
+            deque = this.workers[index].deque;
+            deque.offerLast(task);
+        }
+        if (this.shutdown && deque.removeLastOccurrence(task)) {
+            throw new RejectedExecutionException("Pool has been shut down");
+        }
+        this.signalIdleWorker();
+    }
+
+    /**
+     * Workers finish the tasks already submitted and then exit; tasks
+     * submitted concurrently with "shutdown" may be rejected
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        for (final Worker worker : this.workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final Worker worker : this.workers) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void signalIdleWorker() {
+        Worker worker;
+        while ((worker = this.idleWorkers.poll()) != null) {
+            if (worker.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+
+    private boolean hasQueuedTasks() {
+        for (final Worker worker : this.workers) {
+            if (!worker.deque.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Worker extends Thread {
+        private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+        private final AtomicBoolean idle = new AtomicBoolean(false);
+
+        Worker(final int index) {
+            super("work-stealing-worker-" + index);
+        }
+
+        WorkStealingPool pool() {
+            return WorkStealingPool.this;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = this.deque.pollFirst();
+                if (task == null) {
+                    task = this.steal();
+                }
+                if (task != null) {
+                    this.runTask(task);
+                } else if (WorkStealingPool.this.shutdown) {
+                    if (!WorkStealingPool.this.hasQueuedTasks()) {
+                        return;
+                    }
+                } else {
+                    this.awaitWork();
+                }
+            }
+        }
+
+        /**
+         * Tries the other workers' deques once, starting at a random one so
+         * that idle workers do not all go after the same victim
+         */
+        private Runnable steal() {
+            final Worker[] all = WorkStealingPool.this.workers;
+            final int start = ThreadLocalRandom.current().nextInt(all.length);
+            for (int i = 0; i < all.length; i++) {
+                final Worker victim = all[(start + i) % all.length];
+                if (victim != this) {
+                    final Runnable task = victim.deque.pollLast();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void awaitWork() {
+            this.idle.set(true);
+            WorkStealingPool.this.idleWorkers.offer(this);
+            if (WorkStealingPool.this.hasQueuedTasks() || WorkStealingPool.this.shutdown) {
+                if (this.idle.compareAndSet(true, false)) {
+                    WorkStealingPool.this.idleWorkers.remove(this);
+                }
+                return;
+            }
+            while (this.idle.get() && !WorkStealingPool.this.shutdown) {
+                LockSupport.park(this);
+            }
+        }
+
+        private void runTask(final Runnable task) {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                // Unlike WorkerThread, a failing task must not take its deque down with it
+                this.getUncaughtExceptionHandler().uncaughtException(this, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.measuringcontention;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.narrowinglockscope.AttributeStore;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.narrowinglockscope.BetterAttributeStore;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.reducinglockgranularity.lockstriping.StripedMap;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.reducinglockgranularity.locksplitting.ServerStatusAfterSplit;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.reducinglockgranularity.locksplitting.ServerStatusBeforeSplit;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Contention before and after each of the lock contention refactorings
+ *
+ * Runs the same workload against both versions of each example with
+ * {@link LockContentionProfiler} and prints the two reports and the change
+ * in blocked time and throughput:
+ *
+ *  - lock splitting: ServerStatusBeforeSplit and ServerStatusAfterSplit
+ *  - narrowing the lock scope: AttributeStore and BetterAttributeStore
+ *  - lock striping: a synchronized HashMap and StripedMap
+ */
+public class ContentionComparison {
+    private static final int N_KEYS = 1000;
+    private static final String[] KEYS = new String[N_KEYS];
+    private static final String[] CITIES = {"Prague", "Brno", "Ostrava", "Plzen", "Liberec"};
+
+    static {
+        for (int i = 0; i < N_KEYS; i++) {
+            KEYS[i] = "key" + i;
+        }
+    }
+
+    private final LockContentionProfiler profiler;
+
+    public ContentionComparison(final LockContentionProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public void compare(final String before, final Runnable beforeOperation,
+                        final String after, final Runnable afterOperation) throws InterruptedException {
+        final LockContentionProfiler.Report b = this.profiler.profile(before, beforeOperation);
+        final LockContentionProfiler.Report a = this.profiler.profile(after, afterOperation);
+        System.out.print(b);
+        System.out.print(a);
+        System.out.printf("%s -> %s: blocked time %d ms -> %d ms, blocked samples %.1f%% -> %.1f%%, "
+                                  + "throughput x%.2f%n%n",
+                          before, after, b.getBlockedTimeMillis(), a.getBlockedTimeMillis(),
+                          100 * b.getBlockedRatio(), 100 * a.getBlockedRatio(),
+                          a.getThroughput() / b.getThroughput());
+    }
+
+    private static String randomKey() {
+        return KEYS[ThreadLocalRandom.current().nextInt(N_KEYS)];
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int nThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        final ContentionComparison comparison =
+                new ContentionComparison(new LockContentionProfiler(nThreads, 2000, 1));
+
+        final ServerStatusBeforeSplit beforeSplit = new ServerStatusBeforeSplit();
+        final ServerStatusAfterSplit afterSplit = new ServerStatusAfterSplit();
+        comparison.compare("ServerStatusBeforeSplit", () -> {
+            final String key = randomKey();
+            beforeSplit.addUser(key);
+            beforeSplit.addQuery(key);
+            beforeSplit.removeUser(key);
+            beforeSplit.removeQuery(key);
+        }, "ServerStatusAfterSplit", () -> {
+            final String key = randomKey();
+            afterSplit.addUser(key);
+            afterSplit.addQuery(key);
+            afterSplit.removeUser(key);
+            afterSplit.removeQuery(key);
+        });
+
+        final AttributeStore store = new AttributeStore();
+        final BetterAttributeStore betterStore = new BetterAttributeStore();
+        for (int i = 0; i < N_KEYS; i++) {
+            store.setUserLocation(KEYS[i], CITIES[i % CITIES.length]);
+            betterStore.setUserLocation(KEYS[i], CITIES[i % CITIES.length]);
+        }
+        comparison.compare("AttributeStore", () -> store.userLocationMatches(randomKey(), ".*ra.*"),
+                           "BetterAttributeStore", () -> betterStore.userLocationMatches(randomKey(), ".*ra.*"));
+
+        final Map<Object, Object> synchronizedMap = Collections.synchronizedMap(new HashMap<>());
+        final StripedMap stripedMap = new StripedMap(N_KEYS);
+        comparison.compare("synchronizedMap", () -> {
+            final String key = randomKey();
+            if (synchronizedMap.get(key) == null) {
+                synchronizedMap.put(key, key);
+            }
+        }, "StripedMap", () -> {
+            final String key = randomKey();
+            if (stripedMap.get(key) == null) {
+                stripedMap.put(key, key);
+            }
+        });
+    }
+}
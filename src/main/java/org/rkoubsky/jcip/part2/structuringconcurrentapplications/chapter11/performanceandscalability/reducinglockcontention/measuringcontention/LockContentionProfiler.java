@@ -0,0 +1,206 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.reducinglockcontention.measuringcontention;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measuring lock contention with ThreadMXBean
+ *
+ * Lock splitting, lock striping and narrowing the lock scope all claim to
+ * reduce contention; LockContentionProfiler measures it. It runs an
+ * operation in a loop on nThreads threads for a fixed time and reports:
+ *
+ *  - how many times the threads blocked entering a monitor, and for how
+ *    long in total ("blocked"), and how many times they waited in
+ *    Object.wait, LockSupport.park and the like ("waited"). These are the
+ *    differences of the per-thread counters of {@link ThreadInfo} between
+ *    the start and the end of the run; the times are only available with
+ *    thread contention monitoring, which the profiler enables.
+ *
+ *  - which monitors the threads were blocked on, and which threads owned
+ *    them at that moment. The counters above do not say that, so the
+ *    profiler also samples the worker threads every sampleIntervalMillis
+ *    and attributes every BLOCKED sample to the lock from
+ *    ThreadInfo.getLockInfo and to its owner.
+ *
+ * ThreadMXBean only sees intrinsic locks as "blocked"; threads waiting for
+ * a java.util.concurrent lock are parked, and show up as "waited".
+ */
+public class LockContentionProfiler {
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final int TOP_LOCKS = 5;
+
+    private final int nThreads;
+    private final long durationMillis;
+    private final long sampleIntervalMillis;
+
+    public LockContentionProfiler(final int nThreads, final long durationMillis, final long sampleIntervalMillis) {
+        this.nThreads = nThreads;
+        this.durationMillis = durationMillis;
+        this.sampleIntervalMillis = sampleIntervalMillis;
+    }
+
+    public Report profile(final String name, final Runnable operation) throws InterruptedException {
+        if (threadMXBean.isThreadContentionMonitoringSupported()) {
+            threadMXBean.setThreadContentionMonitoringEnabled(true);
+        }
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final AtomicBoolean stopped = new AtomicBoolean(false);
+        final AtomicLong operations = new AtomicLong();
+        final Thread[] workers = new Thread[this.nThreads];
+        final long[] ids = new long[this.nThreads];
+        for (int i = 0; i < this.nThreads; i++) {
+            workers[i] = new Thread(name + "-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        startGate.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    long n = 0;
+                    while (!stopped.get()) {
+                        operation.run();
+                        n++;
+                    }
+                    operations.addAndGet(n);
+                }
+            };
+            ids[i] = workers[i].getId();
+            workers[i].start();
+        }
+
+        final Report report = new Report(name);
+        startGate.countDown();
+        final long start = System.nanoTime();
+        final ThreadInfo[] first = threadMXBean.getThreadInfo(ids);
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(this.durationMillis);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(this.sampleIntervalMillis);
+            for (final ThreadInfo info : threadMXBean.getThreadInfo(ids)) {
+                report.sample(info);
+            }
+        }
+        // Terminated threads have no ThreadInfo, so read the counters before stopping them
+        final ThreadInfo[] last = threadMXBean.getThreadInfo(ids);
+        stopped.set(true);
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        report.finish(first, last, operations.get(), System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Contention measured during one profiled run
+     */
+    public static class Report {
+        private final String name;
+        private long operations;
+        private long elapsedNanos;
+        private long blockedCount;
+        private long blockedTimeMillis;
+        private long waitedCount;
+        private long waitedTimeMillis;
+        private long samples;
+        private long blockedSamples;
+        private final Map<String, Long> samplesByLock = new HashMap<>();
+        private final Map<String, Map<String, Long>> samplesByLockOwner = new HashMap<>();
+
+        Report(final String name) {
+            this.name = name;
+        }
+
+        private void sample(final ThreadInfo info) {
+            if (info == null) {
+                return;
+            }
+            this.samples++;
+            if (info.getThreadState() != Thread.State.BLOCKED) {
+                return;
+            }
+            this.blockedSamples++;
+            final LockInfo lock = info.getLockInfo();
+            final String lockName = lock == null ? "unknown" : lock.toString();
+            final String owner = info.getLockOwnerName() == null ? "none" : info.getLockOwnerName();
+            this.samplesByLock.merge(lockName, 1L, Long::sum);
+            this.samplesByLockOwner.computeIfAbsent(lockName, k -> new HashMap<>()).merge(owner, 1L, Long::sum);
+        }
+
+        private void finish(final ThreadInfo[] first, final ThreadInfo[] last,
+                            final long operations, final long elapsedNanos) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            for (int i = 0; i < first.length; i++) {
+                if (first[i] == null || last[i] == null) {
+                    continue;
+                }
+                this.blockedCount += last[i].getBlockedCount() - first[i].getBlockedCount();
+                this.waitedCount += last[i].getWaitedCount() - first[i].getWaitedCount();
+                // -1 when contention monitoring is not supported
+                if (first[i].getBlockedTime() >= 0) {
+                    this.blockedTimeMillis += last[i].getBlockedTime() - first[i].getBlockedTime();
+                    this.waitedTimeMillis += last[i].getWaitedTime() - first[i].getWaitedTime();
+                }
+            }
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public double getThroughput() {
+            return this.operations * 1e9 / this.elapsedNanos;
+        }
+
+        public long getBlockedCount() {
+            return this.blockedCount;
+        }
+
+        public long getBlockedTimeMillis() {
+            return this.blockedTimeMillis;
+        }
+
+        public long getWaitedCount() {
+            return this.waitedCount;
+        }
+
+        public long getWaitedTimeMillis() {
+            return this.waitedTimeMillis;
+        }
+
+        /**
+         * Fraction of the samples in which a worker thread was blocked on a monitor
+         */
+        public double getBlockedRatio() {
+            return this.samples == 0 ? 0 : (double) this.blockedSamples / this.samples;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s: %.0f ops/s, blocked %d times (%d ms), waited %d times (%d ms), "
+                                            + "blocked in %.1f%% of %d samples%n",
+                                    this.name, this.getThroughput(), this.blockedCount, this.blockedTimeMillis,
+                                    this.waitedCount, this.waitedTimeMillis, 100 * this.getBlockedRatio(),
+                                    this.samples));
+            final List<Map.Entry<String, Long>> locks = new ArrayList<>(this.samplesByLock.entrySet());
+            locks.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (final Map.Entry<String, Long> lock : locks.subList(0, Math.min(TOP_LOCKS, locks.size()))) {
+                sb.append(String.format("    %s: %d blocked samples, owners %s%n",
+                                        lock.getKey(), lock.getValue(), this.samplesByLockOwner.get(lock.getKey())));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -17,6 +17,10 @@ import java.util.regex.Pattern;
 public class AttributeStore {
     @GuardedBy("this") private final Map<String, String> attributes = new HashMap<>();
 
+    public synchronized void setUserLocation(final String name, final String location) {
+        this.attributes.put("users." + name + ".location", location);
+    }
+
     /**
      * The userLocationMatches method looks up the user's location in a Map and uses
      * regular expression matching the see if the resulting value matches the supplied
@@ -24,6 +24,13 @@ public class BetterAttributeStore {
      */
     @GuardedBy("this") private final Map<String, String> attributes = new HashMap<String, String>();
 
+    public void setUserLocation(final String name, final String location) {
+        final String key = "users." + name + ".location";
+        synchronized (this) {
+            this.attributes.put(key, location);
+        }
+    }
+
     public boolean userLocationMatches(final String name, final String regexp) {
         final String key = "users." + name + ".location";
         final String location;
@@ -47,7 +47,7 @@ public class ServerStatusAfterSplit {
     }
 
     public void removeQuery(final String q) {
-        synchronized (this.users) {
+        synchronized (this.queries) {
             this.queries.remove(q);
         }
     }
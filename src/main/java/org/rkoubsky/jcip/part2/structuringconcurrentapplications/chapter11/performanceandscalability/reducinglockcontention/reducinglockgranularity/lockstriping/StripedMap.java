@@ -53,6 +53,25 @@ public class StripedMap {
         return null;
     }
 
+    public Object put(final Object key, final Object value) {
+        final int hash = this.hash(key);
+        synchronized (this.locks[hash % N_LOCKS]) {
+            for (Node m = this.buckets[hash]; m != null; m = m.next) {
+                if (m.key.equals(key)) {
+                    final Object old = m.value;
+                    m.value = value;
+                    return old;
+                }
+            }
+            final Node node = new Node();
+            node.key = key;
+            node.value = value;
+            node.next = this.buckets[hash];
+            this.buckets[hash] = node;
+        }
+        return null;
+    }
+
     /**
      * <NOTE_avoiding_hot_fields>
      *
@@ -0,0 +1,100 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.WaitStrategy;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounded buffer of primitive ints
+ *
+ * IntBoundedBuffer is {@link SemaphoreBoundedBuffer} specialized for int:
+ * the same pair of counting semaphores and the same synchronized insertion
+ * and extraction, but the elements are stored in an int[]. Putting an int
+ * into a SemaphoreBoundedBuffer<Integer> boxes it (allocating an Integer for
+ * all but the smallest values); IntBoundedBuffer allocates nothing per
+ * element, so a benchmark comparing the two separates the cost of the
+ * buffer from the cost of the allocation.
+ *
+ * (The semaphores still allocate a wait node when a thread actually has to
+ * block, exactly as they do in SemaphoreBoundedBuffer.)
+ */
+@ThreadSafe
+public class IntBoundedBuffer {
+    private final Semaphore availableItems, availableSpaces;
+    @GuardedBy("this") private final int[] items;
+    @GuardedBy("this") private int putPosition = 0, takePosition = 0;
+    private final WaitStrategy waitStrategy;
+
+    public IntBoundedBuffer(final int capacity) {
+        this(capacity, WaitStrategy.BLOCK);
+    }
+
+    public IntBoundedBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.availableItems = new Semaphore(0);
+        this.availableSpaces = new Semaphore(capacity);
+        this.waitStrategy = waitStrategy;
+        this.items = new int[capacity];
+    }
+
+    public boolean isEmpty() {
+        return this.availableItems.availablePermits() == 0;
+    }
+
+    public boolean isFull() {
+        return this.availableSpaces.availablePermits() == 0;
+    }
+
+    public void put(final int x) throws InterruptedException {
+        this.acquire(this.availableSpaces);
+        this.doInsert(x);
+        this.availableItems.release();
+    }
+
+    public int take() throws InterruptedException {
+        this.acquire(this.availableItems);
+        final int item = this.doExtract();
+        this.availableSpaces.release();
+        return item;
+    }
+
+    /**
+     * A blocked "acquire" parks the thread, and it takes tens of microseconds
+     * after the matching "release" until the thread runs again. Before blocking,
+     * the thread retries "tryAcquire" for as long as the wait strategy allows;
+     * with WaitStrategy.BLOCK it blocks right away.
+     */
+    private void acquire(final Semaphore semaphore) throws InterruptedException {
+        int attempts = 0;
+        while (!semaphore.tryAcquire()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (!this.waitStrategy.idle(attempts++)) {
+                semaphore.acquire();
+                return;
+            }
+        }
+    }
+
+    private synchronized void doInsert(final int x) {
+        int i = this.putPosition;
+        this.items[i] = x;
+        this.putPosition = (++i == this.items.length) ? 0 : i;
+    }
+
+    /**
+     * Unlike SemaphoreBoundedBuffer there is no reference to clear, so the
+     * slot is left as it is.
+     */
+    private synchronized int doExtract() {
+        int i = this.takePosition;
+        final int x = this.items[i];
+        this.takePosition = (++i == this.items.length) ? 0 : i;
+        return x;
+    }
+}
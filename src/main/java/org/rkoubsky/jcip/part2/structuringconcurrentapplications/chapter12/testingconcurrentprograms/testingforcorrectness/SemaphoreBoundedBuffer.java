@@ -2,10 +2,16 @@ package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.test
 
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.WaitStrategy;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Bounded buffer using \Semaphore
@@ -18,19 +24,36 @@ import java.util.concurrent.Semaphore;
  * or {@link LinkedBlockingDeque} rather than rolling your own, but the technique
  * used here illustrates how insertions and removals can be controlled in other
  * data structures as well)
+ *
+ * <NOTE_batching>
+ *
+ *     "put" and "take" pay for two semaphore operations and one monitor
+ *     acquisition per element. The batch operations "putAll", "drainTo" and
+ *     "takeAtLeast" acquire and release the permits for the whole batch at
+ *     once and copy the elements as (at most two) contiguous ranges of the
+ *     array in a single critical section, so the synchronization cost is
+ *     paid once per batch instead of once per element.
+ *
+ * </NOTE_batching>
  */
 @ThreadSafe
 public class SemaphoreBoundedBuffer <E> {
     private final Semaphore availableItems, availableSpaces;
     @GuardedBy("this") private final E[] items;
     @GuardedBy("this") private int putPosition = 0, takePosition = 0;
+    private final WaitStrategy waitStrategy;
 
     public SemaphoreBoundedBuffer(final int capacity) {
+        this(capacity, WaitStrategy.BLOCK);
+    }
+
+    public SemaphoreBoundedBuffer(final int capacity, final WaitStrategy waitStrategy) {
         if (capacity <= 0) {
             throw new IllegalArgumentException();
         }
         this.availableItems = new Semaphore(0);
         this.availableSpaces = new Semaphore(capacity);
+        this.waitStrategy = waitStrategy;
         this.items = (E[]) new Object[capacity];
     }
 
@@ -43,7 +66,7 @@ public class SemaphoreBoundedBuffer <E> {
     }
 
     public void put(final E x) throws InterruptedException {
-        this.availableSpaces.acquire();
+        this.acquire(this.availableSpaces);
         this.doInsert(x);
         this.availableItems.release();
     }
@@ -53,12 +76,183 @@ public class SemaphoreBoundedBuffer <E> {
      * released its only permit by calling "put" method)
      */
     public E take() throws InterruptedException {
-        this.availableItems.acquire();
+        this.acquire(this.availableItems);
+        final E item = this.doExtract();
+        this.availableSpaces.release();
+        return item;
+    }
+
+    /**
+     * Timed version of "put": gives up and returns false if no space becomes
+     * available within the timeout
+     */
+    public boolean offer(final E x, final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!this.availableSpaces.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        this.doInsert(x);
+        this.availableItems.release();
+        return true;
+    }
+
+    /**
+     * Timed version of "take": returns null if no item becomes available
+     * within the timeout
+     */
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!this.availableItems.tryAcquire(timeout, unit)) {
+            return null;
+        }
         final E item = this.doExtract();
         this.availableSpaces.release();
         return item;
     }
 
+    /**
+     * A blocked "acquire" parks the thread, and it takes tens of microseconds
+     * after the matching "release" until the thread runs again. Before blocking,
+     * the thread retries "tryAcquire" for as long as the wait strategy allows;
+     * with WaitStrategy.BLOCK it blocks right away.
+     */
+    private void acquire(final Semaphore semaphore) throws InterruptedException {
+        int attempts = 0;
+        while (!semaphore.tryAcquire()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (!this.waitStrategy.idle(attempts++)) {
+                semaphore.acquire();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts all elements of the batch in order. A batch larger than the
+     * capacity is inserted in chunks of at most the capacity, since the
+     * permits for the whole batch could never be available at once; if the
+     * thread is interrupted, the chunks inserted so far stay in the buffer.
+     */
+    public void putAll(final E[] batch) throws InterruptedException {
+        int from = 0;
+        while (from < batch.length) {
+            final int n = Math.min(batch.length - from, this.items.length);
+            this.availableSpaces.acquire(n);
+            this.doInsertAll(batch, from, n);
+            this.availableItems.release(n);
+            from += n;
+        }
+    }
+
+    /**
+     * Removes at most "maxElements" elements that are available right now,
+     * without blocking, and adds them to the given collection.
+     */
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        int n;
+        do {
+            n = Math.min(maxElements, this.availableItems.availablePermits());
+            if (n <= 0) {
+                return 0;
+            }
+        } while (!this.availableItems.tryAcquire(n));
+        this.extractInto(c, n);
+        return n;
+    }
+
+    /**
+     * Blocks until at least "min" elements are available, then removes them
+     * together with any further available elements, up to "max" in total.
+     */
+    public List<E> takeAtLeast(final int min, final int max) throws InterruptedException {
+        if (min <= 0 || min > max || min > this.items.length) {
+            throw new IllegalArgumentException();
+        }
+        this.availableItems.acquire(min);
+        int n = min;
+        int extra;
+        do {
+            extra = Math.min(max - min, this.availableItems.availablePermits());
+        } while (extra > 0 && !this.availableItems.tryAcquire(extra));
+        if (extra > 0) {
+            n += extra;
+        }
+        final List<E> result = new ArrayList<>(n);
+        this.extractInto(result, n);
+        return result;
+    }
+
+    /**
+     * The caller holds "n" availableItems permits. The elements are copied
+     * out inside the critical section, but added to the collection (which
+     * may be slow, or even block) outside of it.
+     *
+     * If the collection throws, the elements it has not taken go back to
+     * the head of the buffer, so that nothing is lost and the order is
+     * kept. That is only possible while no producer can have reused their
+     * slots, so the availableSpaces permits are released only once the
+     * collection has taken the elements.
+     */
+    private void extractInto(final Collection<? super E> c, final int n) {
+        final E[] batch = (E[]) new Object[n];
+        this.doExtractAll(batch, n);
+        int added = 0;
+        try {
+            while (added < n) {
+                c.add(batch[added]);
+                added++;
+            }
+        } finally {
+            if (added < n) {
+                this.doRestoreAll(batch, added, n - added);
+                this.availableItems.release(n - added);
+            }
+            if (added > 0) {
+                this.availableSpaces.release(added);
+            }
+        }
+    }
+
+    private synchronized void doInsertAll(final E[] batch, final int from, final int n) {
+        final int i = this.putPosition;
+        final int first = Math.min(n, this.items.length - i);
+        System.arraycopy(batch, from, this.items, i, first);
+        System.arraycopy(batch, from + first, this.items, 0, n - first);
+        final int next = i + n;
+        this.putPosition = (next >= this.items.length) ? next - this.items.length : next;
+    }
+
+    private synchronized void doExtractAll(final E[] batch, final int n) {
+        final int i = this.takePosition;
+        final int first = Math.min(n, this.items.length - i);
+        System.arraycopy(this.items, i, batch, 0, first);
+        Arrays.fill(this.items, i, i + first, null);
+        System.arraycopy(this.items, 0, batch, first, n - first);
+        Arrays.fill(this.items, 0, n - first, null);
+        final int next = i + n;
+        this.takePosition = (next >= this.items.length) ? next - this.items.length : next;
+    }
+
+    /**
+     * Puts back elements taken by doExtractAll in front of the ones now at
+     * the head. The slots just before "takePosition" are free: the caller
+     * has not released their availableSpaces permits, so no producer can
+     * have filled them.
+     */
+    private synchronized void doRestoreAll(final E[] batch, final int from, final int n) {
+        int i = this.takePosition - n;
+        if (i < 0) {
+            i += this.items.length;
+        }
+        final int first = Math.min(n, this.items.length - i);
+        System.arraycopy(batch, from, this.items, i, first);
+        System.arraycopy(batch, from + first, this.items, 0, n - first);
+        this.takePosition = i;
+    }
+
     private synchronized void doInsert(final E x) {
         int i = this.putPosition;
         this.items[i] = x;
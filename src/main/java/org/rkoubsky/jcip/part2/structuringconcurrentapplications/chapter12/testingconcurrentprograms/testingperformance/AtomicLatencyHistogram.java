@@ -0,0 +1,43 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram for latencies recorded by many threads at once
+ *
+ * When the recording threads cannot each keep their own
+ * {@link LatencyHistogram} (e.g. the worker threads of a pool that record
+ * for its whole life and are read while they run), they share one
+ * AtomicLatencyHistogram. It uses the same buckets, but every bucket is an
+ * element of an {@link AtomicLongArray}, and the sum and maximum are kept in
+ * a LongAdder and a LongAccumulator, so recording is lock-free.
+ *
+ * "snapshot" copies the buckets into a LatencyHistogram for computing
+ * percentiles. The copy is not atomic: values recorded while it is taken may
+ * be included in some of the totals and not others.
+ */
+@ThreadSafe
+public class AtomicLatencyHistogram {
+    private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAccumulator maxValue = new LongAccumulator(Math::max, 0);
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(LatencyHistogram.indexOf(value));
+        this.totalValue.add(value);
+        this.maxValue.accumulate(value);
+    }
+
+    public LatencyHistogram snapshot() {
+        final long[] copy = new long[LatencyHistogram.BUCKETS];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = this.counts.get(i);
+        }
+        return new LatencyHistogram(copy, this.totalValue.sum(), this.maxValue.get());
+    }
+}
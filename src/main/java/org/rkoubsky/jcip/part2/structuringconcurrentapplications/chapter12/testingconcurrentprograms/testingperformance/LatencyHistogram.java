@@ -0,0 +1,142 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log-bucketed histogram of latencies in nanoseconds
+ *
+ * An average hides exactly what matters for latency: the slow tail. Keeping
+ * every sample is too expensive for millions of operations, so the
+ * histogram counts them in buckets instead. Each power of two is split into
+ * SUB_BUCKETS equal buckets, so a recorded value is known within 1/32 (about
+ * 3%) of itself however large it is, and the whole range of long fits into
+ * fewer than 2000 counters.
+ *
+ * A histogram is not thread-safe: every thread records into its own and the
+ * histograms are combined with "add" once the threads have finished.
+ */
+@NotThreadSafe
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+    private long totalValue;
+    private long maxValue;
+
+    public LatencyHistogram() {
+    }
+
+    /**
+     * A histogram with the given bucket counts, for {@link AtomicLatencyHistogram#snapshot()}
+     */
+    LatencyHistogram(final long[] counts, final long totalValue, final long maxValue) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts[i] = counts[i];
+            this.totalCount += counts[i];
+        }
+        this.totalValue = totalValue;
+        this.maxValue = maxValue;
+    }
+
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts[indexOf(value)]++;
+        this.totalCount++;
+        this.totalValue += value;
+        this.maxValue = Math.max(this.maxValue, value);
+    }
+
+    public void add(final LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.totalValue += other.totalValue;
+        this.maxValue = Math.max(this.maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] = 0;
+        }
+        this.totalCount = 0;
+        this.totalValue = 0;
+        this.maxValue = 0;
+    }
+
+    public long getCount() {
+        return this.totalCount;
+    }
+
+    public long getMax() {
+        return this.maxValue;
+    }
+
+    public double getMean() {
+        return this.totalCount == 0 ? 0 : (double) this.totalValue / this.totalCount;
+    }
+
+    /**
+     * Returns the value below which the given percentage (0 - 100) of the
+     * recorded values fall, reported as the upper bound of its bucket
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.totalCount));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    /**
+     * One-line summary of the distribution in the given unit
+     */
+    public String summary(final TimeUnit unit) {
+        final double nanosPerUnit = unit.toNanos(1);
+        return String.format("count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f (%s)",
+                             this.totalCount,
+                             this.getMean() / nanosPerUnit,
+                             this.getValueAtPercentile(50) / nanosPerUnit,
+                             this.getValueAtPercentile(90) / nanosPerUnit,
+                             this.getValueAtPercentile(99) / nanosPerUnit,
+                             this.getValueAtPercentile(99.9) / nanosPerUnit,
+                             this.maxValue / nanosPerUnit,
+                             unit);
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each. Larger values are bucketed
+     * by their highest set bit (the power of two) and the SUB_BUCKET_BITS
+     * bits below it (the position within that power of two).
+     */
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueAt(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,192 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.executorframework;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor that runs the tasks of each key in order, and different keys in parallel
+ *
+ * Updates to the same entity (a vehicle, an account) must be applied in
+ * the order they were submitted, but updates to different entities are
+ * independent. Funneling them through a lock per entity makes the pool
+ * threads block on each other; a single-threaded executor serializes
+ * everything. KeyedSerialExecutor instead gives every key that has work a
+ * mailbox, and submits the mailbox, not the individual tasks, to the
+ * underlying Executor. At most one pool thread drains a given mailbox at a
+ * time, so the tasks of one key run one after another in FIFO order, while
+ * the mailboxes of different keys run on as many threads as the pool has.
+ *
+ * <NOTE_mailbox_state>
+ *
+ *     A mailbox is a ConcurrentLinkedQueue of tasks and an AtomicInteger
+ *     "count" of the tasks submitted to it and not yet finished; no lock
+ *     is held while submitting or running tasks.
+ *
+ *      - a submitter adds its task to the queue first and counts it after;
+ *        the one that moves count from 0 to 1 submits the mailbox to the
+ *        pool
+ *      - the pool thread running the mailbox decrements count after every
+ *        task, and stops when count drops to 0. Whoever raises it again
+ *        submits the mailbox anew, so two threads never drain one mailbox
+ *        at the same time
+ *      - a mailbox that drops to 0 with an empty queue is closed (count set
+ *        to -1) and removed from the map, so a key that has no work leaves
+ *        nothing behind. A submitter that finds a closed mailbox when
+ *        counting its task takes the task back out of the queue, removes
+ *        the mailbox from the map if needed and tries again with a new one
+ *
+ *     Since every task is queued before it is counted, the queue holds at
+ *     least "count" tasks, and the pool thread never finds it empty while
+ *     count > 0. The pool thread may run a task that is queued but not yet
+ *     counted, and so use up the count of a task queued after it. When count
+ *     drops to 0 while tasks are still queued, their submitters have not
+ *     counted them yet, so the mailbox stays open: the first of them raises
+ *     count from 0 and submits the mailbox again.
+ *
+ *     A mailbox runs at most BATCH_SIZE tasks before it is resubmitted to
+ *     the pool, so one busy key cannot keep a pool thread to itself while
+ *     the mailboxes of other keys wait.
+ *
+ * </NOTE_mailbox_state>
+ *
+ * A task that throws does not stop its key: a RuntimeException goes to the
+ * pool thread's uncaught exception handler and the next task runs; an Error
+ * is rethrown after the mailbox has been submitted again, so the next task
+ * runs on another pool thread. If the underlying Executor rejects a
+ * mailbox, the tasks in it are dropped and the RejectedExecutionException
+ * is thrown to the submitter.
+ */
+@ThreadSafe
+public class KeyedSerialExecutor<K> {
+    private static final int BATCH_SIZE = 64;
+
+    private final Executor exec;
+    private final ConcurrentMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(final Executor exec) {
+        this.exec = exec;
+    }
+
+    public void execute(final K key, final Runnable task) {
+        if (key == null || task == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Mailbox mailbox = this.mailboxes.get(key);
+            if (mailbox == null) {
+                final Mailbox created = new Mailbox(key);
+                mailbox = this.mailboxes.putIfAbsent(key, created);
+                if (mailbox == null) {
+                    mailbox = created;
+                }
+            }
+            if (mailbox.offer(task)) {
+                return;
+            }
+            this.mailboxes.remove(key, mailbox);
+        }
+    }
+
+    /**
+     * An Executor for the tasks of one key
+     */
+    public Executor forKey(final K key) {
+        return (task) -> this.execute(key, task);
+    }
+
+    /**
+     * Keys with tasks queued or running
+     */
+    public int getActiveKeyCount() {
+        return this.mailboxes.size();
+    }
+
+    private class Mailbox implements Runnable {
+        private final K key;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        Mailbox(final K key) {
+            this.key = key;
+        }
+
+        /**
+         * Returns false if the mailbox has been closed, and the task has to
+         * be submitted to another mailbox
+         */
+        boolean offer(final Runnable task) {
+            this.tasks.offer(task);
+            int c;
+            do {
+                c = this.count.get();
+                if (c < 0) {
+                    this.tasks.remove(task);
+                    return false;
+                }
+            } while (!this.count.compareAndSet(c, c + 1));
+            if (c == 0) {
+                this.schedule();
+            }
+            return true;
+        }
+
+        private void schedule() {
+            try {
+                KeyedSerialExecutor.this.exec.execute(this);
+            } catch (final RejectedExecutionException e) {
+                this.count.set(-1);
+                KeyedSerialExecutor.this.mailboxes.remove(this.key, this);
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                final Runnable task = this.tasks.poll();
+                try {
+                    task.run();
+                } catch (final RuntimeException e) {
+                    final Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                } catch (final Error e) {
+                    // The Error takes this pool thread down, but not the key
+                    if (this.finishTask()) {
+                        try {
+                            this.schedule();
+                        } catch (final RejectedExecutionException rejected) {
+                            e.addSuppressed(rejected);
+                        }
+                    }
+                    throw e;
+                }
+                if (!this.finishTask()) {
+                    return;
+                }
+            }
+            this.schedule();
+        }
+
+        /**
+         * Returns true if more tasks are counted, false if the mailbox is
+         * done for now
+         */
+        private boolean finishTask() {
+            if (this.count.decrementAndGet() > 0) {
+                return true;
+            }
+            if (this.tasks.isEmpty() && this.count.compareAndSet(0, -1)) {
+                KeyedSerialExecutor.this.mailboxes.remove(this.key, this);
+            }
+            // otherwise a submitter raises count from 0 and submits the mailbox again
+            return false;
+        }
+    }
+}
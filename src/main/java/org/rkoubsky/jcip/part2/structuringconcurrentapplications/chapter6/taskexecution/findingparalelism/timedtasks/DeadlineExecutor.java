@@ -0,0 +1,188 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.findingparalelism.timedtasks;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Earliest-deadline-first executor for tasks with a time budget
+ *
+ * RenderWithTimeBudget and TravelReservationsPortal give their tasks a
+ * time budget, but submit them to a FIFO pool, which knows nothing about
+ * it. Under load, tasks wait in the queue until their budget is gone and
+ * are then run anyway, for a caller that has already given up on them,
+ * while tasks that could still make it wait behind them.
+ *
+ * DeadlineExecutor takes the deadline together with the task:
+ *
+ *  - the work queue is a PriorityBlockingQueue ordered by deadline (ties
+ *    in submission order), so the task closest to its deadline runs first
+ *  - a task whose deadline passes while it is queued is never run; its
+ *    future completes with the timeout result the caller supplied
+ *  - a task still running at its deadline is interrupted, as
+ *    RenderWithTimeBudget does with "cancel(true)", and its future also
+ *    completes with the timeout result
+ *
+ * The future completes at the deadline whatever the task is doing, so the
+ * caller can use a plain "get". Expiry is driven by a single timer thread.
+ * Expired tasks stay in the queue until a worker reaches them, but being
+ * the earliest deadlines they are at its head and are discarded at once.
+ *
+ * Under overload EDF alone can make things worse (every task is run a
+ * little too late), which is why dropping the expired tasks matters: the
+ * CPU time goes to the tasks that can still finish in time.
+ */
+@ThreadSafe
+public class DeadlineExecutor {
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder expiredInQueueCount = new LongAdder();
+    private final LongAdder expiredRunningCount = new LongAdder();
+
+    public DeadlineExecutor(final int nThreads) {
+        this.workers = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+                                              new PriorityBlockingQueue<Runnable>());
+        this.timer = new ScheduledThreadPoolExecutor(1);
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Runs the task if it can be started within the timeout; the returned
+     * future completes with timeoutResult if the task does not complete
+     * within it
+     */
+    public <T> Future<T> submit(final Callable<T> task, final T timeoutResult,
+                                final long timeout, final TimeUnit unit) {
+        final DeadlineTask<T> future = new DeadlineTask<>(task, timeoutResult,
+                                                          System.nanoTime() + unit.toNanos(timeout));
+        future.expiry = this.timer.schedule(future::expire, timeout, unit);
+        this.workers.execute(future);
+        return future;
+    }
+
+    public void shutdown() {
+        this.workers.shutdown();
+        this.timer.shutdown();
+    }
+
+    public void shutdownNow() {
+        this.workers.shutdownNow();
+        this.timer.shutdownNow();
+    }
+
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return this.workers.awaitTermination(timeout, unit)
+                && this.timer.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getCompletedCount() {
+        return this.completedCount.sum();
+    }
+
+    /**
+     * Tasks dropped without being run
+     */
+    public long getExpiredInQueueCount() {
+        return this.expiredInQueueCount.sum();
+    }
+
+    /**
+     * Tasks interrupted at their deadline
+     */
+    public long getExpiredRunningCount() {
+        return this.expiredRunningCount.sum();
+    }
+
+    private class DeadlineTask<T> extends FutureTask<T> implements Comparable<DeadlineTask<?>> {
+        private final T timeoutResult;
+        private final long deadlineNanos;
+        private final long sequenceNumber = DeadlineExecutor.this.sequence.getAndIncrement();
+        private volatile ScheduledFuture<?> expiry;
+        @GuardedBy("this")
+        private Thread runner;
+        @GuardedBy("this")
+        private boolean started;
+        @GuardedBy("this")
+        private boolean expired;
+
+        DeadlineTask(final Callable<T> callable, final T timeoutResult, final long deadlineNanos) {
+            super(callable);
+            this.timeoutResult = timeoutResult;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public int compareTo(final DeadlineTask<?> other) {
+            final long diff = this.deadlineNanos - other.deadlineNanos;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(this.sequenceNumber, other.sequenceNumber);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.isDone()) {
+                    return;
+                }
+                // the timer may not have got to it yet
+                if (System.nanoTime() - this.deadlineNanos >= 0) {
+                    this.expire();
+                    return;
+                }
+                this.started = true;
+                this.runner = Thread.currentThread();
+            }
+            try {
+                super.run();
+            } finally {
+                synchronized (this) {
+                    this.runner = null;
+                }
+            }
+        }
+
+        synchronized void expire() {
+            if (this.isDone()) {
+                return;
+            }
+            this.expired = true;
+            this.set(this.timeoutResult);
+            if (this.started) {
+                DeadlineExecutor.this.expiredRunningCount.increment();
+                if (this.runner != null) {
+                    this.runner.interrupt();
+                }
+            } else {
+                DeadlineExecutor.this.expiredInQueueCount.increment();
+            }
+        }
+
+        @Override
+        protected void done() {
+            final ScheduledFuture<?> expiry = this.expiry;
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+            synchronized (this) {
+                if (!this.expired && !this.isCancelled()) {
+                    DeadlineExecutor.this.completedCount.increment();
+                }
+            }
+        }
+    }
+}
@@ -21,11 +21,18 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
  *
  * If the "get" times out, it cancels the ad-fetching task and uses a default
  * advertisement instead.
+ *
+ * "renderPageWithAdByDeadline" hands the time budget to a
+ * {@link DeadlineExecutor} instead, which completes the future with the
+ * default advertisement at the deadline and does not fetch an ad nobody
+ * will wait for.
  */
 public class RenderWithTimeBudget {
     private static final Ad DEFAULT_AD = new Ad();
     private static final long TIME_BUDGET = 1000;
     private static final ExecutorService exec = Executors.newCachedThreadPool();
+    private static final DeadlineExecutor deadlineExec =
+            new DeadlineExecutor(Runtime.getRuntime().availableProcessors());
 
     Page renderPageWithAd() throws InterruptedException {
         final long endNanos = System.nanoTime() + TIME_BUDGET;
@@ -64,6 +71,20 @@ public class RenderWithTimeBudget {
         return page;
     }
 
+    Page renderPageWithAdByDeadline() throws InterruptedException {
+        final Future<Ad> f = deadlineExec.submit(new FetchAdTask(), DEFAULT_AD, TIME_BUDGET, NANOSECONDS);
+        final Page page = this.renderPageBody();
+        Ad ad;
+        try {
+            // completes with DEFAULT_AD once the time budget runs out
+            ad = f.get();
+        } catch (final ExecutionException e) {
+            ad = DEFAULT_AD;
+        }
+        page.setAd(ad);
+        return page;
+    }
+
     Page renderPageBody() { return new Page(); }
 
 
@@ -22,9 +22,16 @@ import java.util.concurrent.TimeUnit;
  * response time for the page driven by the slowest response, it may be
  * preferable to present only the information available within a given time
  * budget.
+ *
+ * "getRankedTravelQuotesByDeadline" does the same on a shared
+ * {@link DeadlineExecutor}: under load the quote tasks of the requests
+ * closest to their deadline run first, and tasks of requests whose budget
+ * has run out are dropped instead of occupying a thread.
  */
 public class TravelReservationsPortal {
     private static ExecutorService exec = Executors.newCachedThreadPool();
+    private static final DeadlineExecutor deadlineExec =
+            new DeadlineExecutor(4 * Runtime.getRuntime().availableProcessors());
 
     public List<TravelQuote> getRankedTravelQuotes(final TravelInfo travelInfo, final Set<TravelCompany> companies,
             final Comparator<TravelQuote> ranking, final long time, final TimeUnit unit)
@@ -72,6 +79,32 @@ public class TravelReservationsPortal {
         return quotes;
     }
 
+    public List<TravelQuote> getRankedTravelQuotesByDeadline(final TravelInfo travelInfo,
+            final Set<TravelCompany> companies, final Comparator<TravelQuote> ranking, final long time,
+            final TimeUnit unit) throws InterruptedException {
+        final List<QuoteTask> tasks = new ArrayList<>();
+        final List<Future<TravelQuote>> futures = new ArrayList<>();
+        for (final TravelCompany company : companies) {
+            final QuoteTask task = new QuoteTask(company, travelInfo);
+            tasks.add(task);
+            futures.add(deadlineExec.submit(task, task.getTimeoutQuote(), time, unit));
+        }
+
+        final List<TravelQuote> quotes = new ArrayList<>(tasks.size());
+        final Iterator<QuoteTask> taskIter = tasks.iterator();
+        for (final Future<TravelQuote> f : futures) {
+            final QuoteTask task = taskIter.next();
+            try {
+                // every future completes by the deadline, with the timeout quote if need be
+                quotes.add(f.get());
+            } catch (final ExecutionException e) {
+                quotes.add(task.getFailureQuote(e.getCause()));
+            }
+        }
+
+        Collections.sort(quotes, ranking);
+        return quotes;
+    }
 }
 
 class QuoteTask implements Callable<TravelQuote> {
@@ -88,6 +121,10 @@ class QuoteTask implements Callable<TravelQuote> {
     }
 
     TravelQuote getTimeoutQuote(final CancellationException e) {
+        return this.getTimeoutQuote();
+    }
+
+    TravelQuote getTimeoutQuote() {
         return null;
     }
 
@@ -0,0 +1,95 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter7.cancellationandshutdown.shutdown.loggingservice;
+
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.SpscRingBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.WaitStrategy;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * LogWriter with one single-producer, single-consumer lane per producer
+ *
+ * {@link LogWriter} hands every message to the logger thread through a
+ * shared LinkedBlockingQueue, which allocates a node per message and takes
+ * a lock on both ends. LaneLogWriter gives each thread calling "log" its own
+ * {@link SpscRingBuffer} (a lane): the calling thread is the lane's only
+ * producer and the logger thread is the only consumer of every lane, so no
+ * handoff needs a lock or a CAS.
+ *
+ * The logger thread drains the lanes round-robin, in batches, and waits
+ * according to the {@link WaitStrategy} only when all lanes are empty. Messages from one
+ * thread are written in the order they were logged; messages from different
+ * threads may interleave in a different order than they were logged.
+ *
+ * Like LogWriter, LaneLogWriter has no shutdown support, and a producer
+ * blocks in "log" while its own lane is full. Lanes of producer threads that
+ * have terminated are never removed, so it suits a fixed set of long-lived
+ * producer threads rather than a cached thread pool.
+ */
+public class LaneLogWriter {
+    private static final int LANE_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 256;
+    private static final long PARK_NANOS = 50000L;
+    private final List<SpscRingBuffer<String>> lanes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<SpscRingBuffer<String>> lane;
+    private final WaitStrategy waitStrategy;
+    private final LoggerThread logger;
+
+    public LaneLogWriter(final Writer writer) {
+        this(writer, WaitStrategy.timedPark(PARK_NANOS));
+    }
+
+    public LaneLogWriter(final Writer writer, final WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        this.lane = ThreadLocal.withInitial(() -> {
+            final SpscRingBuffer<String> newLane = new SpscRingBuffer<>(LANE_CAPACITY, waitStrategy);
+            this.lanes.add(newLane);
+            return newLane;
+        });
+        this.logger = new LoggerThread(writer);
+    }
+
+    public void start() {
+        this.logger.start();
+    }
+
+    public void log(final String msg) throws InterruptedException {
+        this.lane.get().put(msg);
+    }
+
+    private class LoggerThread extends Thread {
+        private final PrintWriter writer;
+        private final Consumer<String> printer;
+
+        public LoggerThread(final Writer writer) {
+            this.writer = new PrintWriter(writer, true); // autoflush
+            this.printer = this.writer::println;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int idleAttempts = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    int drained = 0;
+                    for (final SpscRingBuffer<String> lane : LaneLogWriter.this.lanes) {
+                        drained += lane.drain(this.printer, BATCH_SIZE);
+                    }
+                    if (drained == 0) {
+                        if (!LaneLogWriter.this.waitStrategy.idle(idleAttempts++)) {
+                            LockSupport.parkNanos(PARK_NANOS);
+                        }
+                    } else {
+                        idleAttempts = 0;
+                    }
+                }
+            } finally {
+                this.writer.close();
+            }
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter7.cancellationandshutdown.shutdown.poisonpills;
 
 import org.rkoubsky.jcip.part1.fundamentals.chapter5.buildingblocks.blockingqueues.ProducerConsumer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.BlockingLinkedQueue;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Shutdown with poison pill
@@ -35,7 +35,7 @@ public class IndexingService {
     public static final File POISON = new File("");
     private final IndexerThread consumer;
     private final CrawlerThread producer;
-    private final BlockingQueue<File> queue = new LinkedBlockingQueue<File>(CAPACITY);
+    private final BlockingQueue<File> queue = new BlockingLinkedQueue<File>(CAPACITY);
 
     public IndexingService(final File root, final FileFilter fileFilter) {
         final FileFilter filter = new FileFilter() {
@@ -1,11 +1,27 @@
 package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.extendingthreadpoolexecutor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.AtomicLatencyHistogram;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.LatencyHistogram;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Thread pool extended with logging and timing
@@ -13,12 +29,123 @@ import java.util.concurrent.atomic.AtomicLong;
  * TimingThreadPool shows a custom thread pool that uses
  * beforeExecute, afterExecute, and "terminated" to add
  * logging and statistics gathering.
+ *
+ * <NOTE_per_task_type_histograms>
+ * A single average hides the slow tail, and it mixes up two different
+ * causes of a slow task: waiting in the work queue for a free thread
+ * (the pool is too small or saturated) and running for a long time (the
+ * task itself is slow). The pool therefore records both separately, per
+ * task class, into log-bucketed histograms:
+ *
+ *  - queue wait: from "execute" (or "submit") to "beforeExecute"
+ *  - run time: from "beforeExecute" to "afterExecute"
+ *
+ * To know when a task was submitted, "execute" wraps it in a
+ * {@link TimedTask} carrying the submit time and the class of the
+ * original task; "submit" does the same through "newTaskFor", so the
+ * FutureTask is not wrapped a second time. "remove" and "shutdownNow"
+ * see through the wrapper, so they work with the tasks as they were
+ * passed to "execute"; the elements of "getQueue" are the wrappers, whose
+ * toString is that of the task they wrap.
+ *
+ * The histograms are shared by all pool threads and read while they run,
+ * so they are {@link AtomicLatencyHistogram}s: recording is a few atomic
+ * increments, with no locking and no string formatting on the path of
+ * every task. They can be read live through {@link TimingThreadPoolMXBean}
+ * after "registerMBean", and are logged once when the pool terminates.
+ * </NOTE_per_task_type_histograms>
+ *
+ * <NOTE_adaptive_sizing>
+ * Section 8.2 sizes a pool for tasks that block with
+ *
+ *      N_threads = N_cpu * U_cpu * (1 + W/C)
+ *
+ * where U_cpu is the target CPU utilization and W/C is the ratio of wait
+ * time to compute time. A pool created with the adaptive constructor
+ * measures W/C instead of having it guessed: the run time of a task is its
+ * wall time, its compute time is the thread CPU time it used (from
+ * ThreadMXBean), and the rest was spent blocked. Once per resize interval,
+ * whichever pool thread finishes a task first after the interval has
+ * passed recomputes the formula and adjusts the core pool size, so no
+ * extra thread is needed and an idle pool is left alone.
+ *
+ * To keep the pool from oscillating:
+ *
+ *  - an interval with fewer than MIN_SAMPLES tasks is merged into the next
+ *  - the measured W/C is smoothed over the intervals (exponential moving
+ *    average with weight SMOOTHING)
+ *  - the pool is resized only if the new size differs from the current one
+ *    by more than HYSTERESIS of it, and never outside [minThreads,
+ *    maxThreads]
+ *
+ * The work queue is unbounded, so the pool never grows past its core size
+ * by itself; the maximum pool size is set to maxThreads only so that the
+ * core size can be raised up to it. Every computed size and every resize is
+ * visible through TimingThreadPoolMXBean.
+ *
+ * Time a thread spends runnable but waiting for a CPU is counted as wait
+ * time as well, so on a machine already oversubscribed by other work W/C
+ * is overestimated and the pool grows further; maxThreads bounds that.
+ * </NOTE_adaptive_sizing>
  */
 @Slf4j
-public class TimingThreadPool extends ThreadPoolExecutor {
+public class TimingThreadPool extends ThreadPoolExecutor implements TimingThreadPoolMXBean {
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final int MIN_SAMPLES = 10;
+    private static final double SMOOTHING = 0.5;
+    private static final double HYSTERESIS = 0.2;
+
+    private final boolean adaptive;
+    private final int minThreads;
+    private final int maxThreads;
+    private final int nCpu;
+    private final double targetUtilization;
+    private final long resizeIntervalNanos;
 
     public TimingThreadPool() {
         super(2, 2, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        this.adaptive = false;
+        this.minThreads = 2;
+        this.maxThreads = 2;
+        this.nCpu = Runtime.getRuntime().availableProcessors();
+        this.targetUtilization = 1.0;
+        this.resizeIntervalNanos = 0;
+        this.recommendedPoolSize = 2;
+    }
+
+    /**
+     * An adaptive pool of minThreads to maxThreads threads, resized every
+     * resizeInterval for the target CPU utilization (0 - 1)
+     */
+    public TimingThreadPool(final int minThreads, final int maxThreads, final double targetUtilization,
+                            final long resizeInterval, final TimeUnit unit) {
+        this(minThreads, maxThreads, Runtime.getRuntime().availableProcessors(), targetUtilization,
+                resizeInterval, unit);
+    }
+
+    /**
+     * Sizes the pool for nCpu processors instead of the ones of this machine
+     */
+    TimingThreadPool(final int minThreads, final int maxThreads, final int nCpu, final double targetUtilization,
+                     final long resizeInterval, final TimeUnit unit) {
+        super(minThreads, maxThreads, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        if (minThreads <= 0 || nCpu <= 0 || targetUtilization <= 0 || targetUtilization > 1 || resizeInterval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.adaptive = threadMXBean.isCurrentThreadCpuTimeSupported();
+        if (this.adaptive && !threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.nCpu = nCpu;
+        this.targetUtilization = targetUtilization;
+        this.resizeIntervalNanos = unit.toNanos(resizeInterval);
+        this.nextResizeAt.set(System.nanoTime() + this.resizeIntervalNanos);
+        final int initialSize = this.poolSizeFor(0);
+        this.recommendedPoolSize = initialSize;
+        this.setCorePoolSize(initialSize);
     }
 
     /**
@@ -29,15 +156,87 @@ public class TimingThreadPool extends ThreadPoolExecutor {
      * can be retrieved by afterExecute.
      */
     private final ThreadLocal<Long> startTime = new ThreadLocal<Long>();
-    private final AtomicLong numTasks = new AtomicLong();
-    private final AtomicLong totalTime = new AtomicLong();
+    private final ConcurrentMap<Class<?>, TaskTypeStats> statsByType = new ConcurrentHashMap<>();
+    private volatile ObjectName objectName;
+
+    private final ThreadLocal<Long> startCpuTime = new ThreadLocal<Long>();
+    private final LongAdder intervalTasks = new LongAdder();
+    private final LongAdder intervalWallTime = new LongAdder();
+    private final LongAdder intervalCpuTime = new LongAdder();
+    private final AtomicLong nextResizeAt = new AtomicLong();
+    private final AtomicLong resizeCount = new AtomicLong();
+    private volatile double waitComputeRatio = Double.NaN;
+    private volatile int recommendedPoolSize;
+    private volatile int lastResizeFrom;
+    private volatile int lastResizeTo;
+    private volatile long lastResizeTimeMillis;
+
+    /**
+     * Registers the pool in the platform MBean server as
+     * "org.rkoubsky.jcip:type=TimingThreadPool,name=<name>"; it is
+     * unregistered when the pool terminates
+     */
+    public ObjectName registerMBean(final String name) throws JMException {
+        final ObjectName objectName = new ObjectName("org.rkoubsky.jcip:type=TimingThreadPool,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+        return objectName;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(command instanceof TimedTask ? command : new TimedRunnable(command));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new TimedFutureTask<>(runnable, value, runnable.getClass());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new TimedFutureTask<>(callable, callable.getClass());
+    }
+
+    /**
+     * Returns the tasks as they were submitted, not their TimedRunnable wrappers
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> tasks = new ArrayList<>();
+        for (final Runnable task : super.shutdownNow()) {
+            tasks.add(task instanceof TimedRunnable ? ((TimedRunnable) task).command : task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Removes the task itself or the TimedRunnable wrapping it from the queue
+     */
+    @Override
+    public boolean remove(final Runnable task) {
+        for (final Runnable queued : this.getQueue()) {
+            if (queued == task || (queued instanceof TimedRunnable && ((TimedRunnable) queued).command == task)) {
+                return super.remove(queued);
+            }
+        }
+        return false;
+    }
 
     @Override
     protected void beforeExecute(final Thread t, final Runnable r) {
         super.beforeExecute(t, r);
-        log.debug("Thread {}: start {}s", t, r.getClass().getSimpleName());
         // set the ThreadLocal value of currently executing pool thread
-        this.startTime.set(System.nanoTime());
+        final long now = System.nanoTime();
+        this.startTime.set(now);
+        if (this.adaptive) {
+            this.startCpuTime.set(threadMXBean.getCurrentThreadCpuTime());
+        }
+        final TimedTask task = (TimedTask) r;
+        this.statsFor(task.taskType()).queueWait.record(now - task.submitTime());
     }
 
     @Override
@@ -46,10 +245,13 @@ public class TimingThreadPool extends ThreadPoolExecutor {
             final long endTime = System.nanoTime();
             // read the ThreadLocal value set by currently executing pool thread in "beforeExecute" above
             final long taskTime = endTime - this.startTime.get();
-            this.numTasks.incrementAndGet();
-            this.totalTime.addAndGet(taskTime);
-            log.debug("Thread {}: end {}, time={}}", Thread.currentThread().getName(), r
-                    .getClass().getSimpleName(), taskTime);
+            this.statsFor(((TimedTask) r).taskType()).runTime.record(taskTime);
+            if (this.adaptive) {
+                this.intervalTasks.increment();
+                this.intervalWallTime.add(taskTime);
+                this.intervalCpuTime.add(threadMXBean.getCurrentThreadCpuTime() - this.startCpuTime.get());
+                this.maybeResize(endTime);
+            }
         } finally {
             super.afterExecute(r, t);
         }
@@ -58,9 +260,252 @@ public class TimingThreadPool extends ThreadPoolExecutor {
     @Override
     protected void terminated() {
         try {
-            log.info("Terminated: avg time={}ns", this.totalTime.get() / this.numTasks.get());
+            for (final Map.Entry<Class<?>, TaskTypeStats> entry : this.statsByType.entrySet()) {
+                log.info("Terminated: {} queue wait {}", entry.getKey().getName(),
+                         entry.getValue().queueWait.snapshot().summary(TimeUnit.MICROSECONDS));
+                log.info("Terminated: {} run time {}", entry.getKey().getName(),
+                         entry.getValue().runTime.snapshot().summary(TimeUnit.MICROSECONDS));
+            }
+            this.unregisterMBean();
         } finally {
             super.terminated();
         }
     }
+
+    /**
+     * Snapshot of the queue-wait times of the given task class
+     */
+    public LatencyHistogram getQueueWaitHistogram(final Class<?> taskType) {
+        final TaskTypeStats stats = this.statsByType.get(taskType);
+        return stats == null ? new LatencyHistogram() : stats.queueWait.snapshot();
+    }
+
+    /**
+     * Snapshot of the run times of the given task class
+     */
+    public LatencyHistogram getRunTimeHistogram(final Class<?> taskType) {
+        final TaskTypeStats stats = this.statsByType.get(taskType);
+        return stats == null ? new LatencyHistogram() : stats.runTime.snapshot();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return this.getQueue().size();
+    }
+
+    @Override
+    public String[] getTaskTypes() {
+        final List<String> names = new ArrayList<>();
+        for (final Class<?> type : this.statsByType.keySet()) {
+            names.add(type.getName());
+        }
+        return names.toArray(new String[0]);
+    }
+
+    @Override
+    public Map<String, String> getQueueWaitSummaries() {
+        final Map<String, String> summaries = new TreeMap<>();
+        for (final Map.Entry<Class<?>, TaskTypeStats> entry : this.statsByType.entrySet()) {
+            summaries.put(entry.getKey().getName(),
+                          entry.getValue().queueWait.snapshot().summary(TimeUnit.MICROSECONDS));
+        }
+        return summaries;
+    }
+
+    @Override
+    public Map<String, String> getRunTimeSummaries() {
+        final Map<String, String> summaries = new TreeMap<>();
+        for (final Map.Entry<Class<?>, TaskTypeStats> entry : this.statsByType.entrySet()) {
+            summaries.put(entry.getKey().getName(),
+                          entry.getValue().runTime.snapshot().summary(TimeUnit.MICROSECONDS));
+        }
+        return summaries;
+    }
+
+    @Override
+    public long getQueueWaitPercentile(final String taskType, final double percentile) {
+        final TaskTypeStats stats = this.statsByName(taskType);
+        return stats == null ? 0 : stats.queueWait.snapshot().getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public long getRunTimePercentile(final String taskType, final double percentile) {
+        final TaskTypeStats stats = this.statsByName(taskType);
+        return stats == null ? 0 : stats.runTime.snapshot().getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return this.adaptive;
+    }
+
+    @Override
+    public double getTargetUtilization() {
+        return this.targetUtilization;
+    }
+
+    @Override
+    public double getWaitComputeRatio() {
+        return this.waitComputeRatio;
+    }
+
+    @Override
+    public int getRecommendedPoolSize() {
+        return this.recommendedPoolSize;
+    }
+
+    @Override
+    public long getResizeCount() {
+        return this.resizeCount.get();
+    }
+
+    @Override
+    public int getLastResizeFrom() {
+        return this.lastResizeFrom;
+    }
+
+    @Override
+    public int getLastResizeTo() {
+        return this.lastResizeTo;
+    }
+
+    @Override
+    public long getLastResizeTimeMillis() {
+        return this.lastResizeTimeMillis;
+    }
+
+    /**
+     * Only the thread that moves "nextResizeAt" forward resizes, so
+     * resizing never runs concurrently with itself
+     */
+    private void maybeResize(final long now) {
+        final long resizeAt = this.nextResizeAt.get();
+        if (now - resizeAt < 0 || !this.nextResizeAt.compareAndSet(resizeAt, now + this.resizeIntervalNanos)) {
+            return;
+        }
+        if (this.intervalTasks.sum() < MIN_SAMPLES) {
+            return;
+        }
+        this.intervalTasks.reset();
+        final long wallTime = this.intervalWallTime.sumThenReset();
+        final long cpuTime = Math.max(1, this.intervalCpuTime.sumThenReset());
+        final double measured = Math.max(0, (double) (wallTime - cpuTime) / cpuTime);
+        final double previous = this.waitComputeRatio;
+        final double ratio = Double.isNaN(previous) ? measured : SMOOTHING * measured + (1 - SMOOTHING) * previous;
+        this.waitComputeRatio = ratio;
+
+        final int target = this.poolSizeFor(ratio);
+        this.recommendedPoolSize = target;
+        final int current = this.getCorePoolSize();
+        if (Math.abs(target - current) > HYSTERESIS * current) {
+            this.setCorePoolSize(target);
+            this.lastResizeFrom = current;
+            this.lastResizeTo = target;
+            this.lastResizeTimeMillis = System.currentTimeMillis();
+            this.resizeCount.incrementAndGet();
+            log.info("Resized core pool from {} to {} threads, W/C={}", current, target, String.format("%.2f", ratio));
+        }
+    }
+
+    /**
+     * N_cpu * U_cpu * (1 + W/C), within [minThreads, maxThreads]
+     */
+    private int poolSizeFor(final double waitComputeRatio) {
+        final long size = Math.round(this.nCpu * this.targetUtilization * (1 + waitComputeRatio));
+        return (int) Math.max(this.minThreads, Math.min(this.maxThreads, size));
+    }
+
+    /**
+     * "get" first: in Java 8 "computeIfAbsent" locks the bin even when the
+     * key is present, which would serialize the pool threads on every task
+     */
+    private TaskTypeStats statsFor(final Class<?> taskType) {
+        final TaskTypeStats stats = this.statsByType.get(taskType);
+        return stats != null ? stats : this.statsByType.computeIfAbsent(taskType, (type) -> new TaskTypeStats());
+    }
+
+    private TaskTypeStats statsByName(final String taskType) {
+        for (final Map.Entry<Class<?>, TaskTypeStats> entry : this.statsByType.entrySet()) {
+            if (entry.getKey().getName().equals(taskType)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void unregisterMBean() {
+        final ObjectName objectName = this.objectName;
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (final JMException e) {
+                log.warn("Unable to unregister {}", objectName, e);
+            }
+        }
+    }
+
+    private static class TaskTypeStats {
+        private final AtomicLatencyHistogram queueWait = new AtomicLatencyHistogram();
+        private final AtomicLatencyHistogram runTime = new AtomicLatencyHistogram();
+    }
+
+    private interface TimedTask extends Runnable {
+        Class<?> taskType();
+
+        long submitTime();
+    }
+
+    private static class TimedRunnable implements TimedTask {
+        private final Runnable command;
+        private final long submitTime = System.nanoTime();
+
+        TimedRunnable(final Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public Class<?> taskType() {
+            return this.command.getClass();
+        }
+
+        @Override
+        public long submitTime() {
+            return this.submitTime;
+        }
+
+        @Override
+        public void run() {
+            this.command.run();
+        }
+
+        @Override
+        public String toString() {
+            return this.command.toString();
+        }
+    }
+
+    private static class TimedFutureTask<V> extends FutureTask<V> implements TimedTask {
+        private final Class<?> taskType;
+        private final long submitTime = System.nanoTime();
+
+        TimedFutureTask(final Callable<V> callable, final Class<?> taskType) {
+            super(callable);
+            this.taskType = taskType;
+        }
+
+        TimedFutureTask(final Runnable runnable, final V result, final Class<?> taskType) {
+            super(runnable, result);
+            this.taskType = taskType;
+        }
+
+        @Override
+        public Class<?> taskType() {
+            return this.taskType;
+        }
+
+        @Override
+        public long submitTime() {
+            return this.submitTime;
+        }
+    }
 }
@@ -2,19 +2,27 @@ package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threa
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ExecutorService;
+import javax.management.JMException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 @Slf4j
 public class TimingThreadPoolDemo {
-    public static void main(final String[] args) throws InterruptedException {
-        final ExecutorService exec = new TimingThreadPool();
+    public static void main(final String[] args) throws InterruptedException, JMException {
+        final TimingThreadPool exec = new TimingThreadPool();
+        exec.registerMBean("demo");
 
         log.info("Starting {} instance.", exec.getClass().getSimpleName());
         IntStream.rangeClosed(0, 1).forEach((i) -> {
             exec.execute(() -> log.debug("Running in thread:{}", Thread.currentThread().getId()));
         });
+        IntStream.rangeClosed(0, 9).forEach((i) -> {
+            exec.submit(() -> {
+                TimeUnit.MILLISECONDS.sleep(10);
+                return i;
+            });
+        });
+        log.info("Run times: {}", exec.getRunTimeSummaries());
         log.info("Shutting down executor service.");
         exec.shutdown();
         exec.awaitTermination(5, TimeUnit.SECONDS);
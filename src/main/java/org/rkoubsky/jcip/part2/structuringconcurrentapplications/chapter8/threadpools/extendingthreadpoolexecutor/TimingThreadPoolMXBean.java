@@ -0,0 +1,56 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.extendingthreadpoolexecutor;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link TimingThreadPool}
+ *
+ * Times are in nanoseconds. Task types are the class names of the submitted
+ * Runnables and Callables; the summary maps go from task type to
+ * {@link org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.LatencyHistogram#summary}
+ * in microseconds, so that the whole distribution can be read at a glance
+ * in JConsole.
+ *
+ * For an adaptive pool, the W/C ratio is the smoothed measured ratio of
+ * blocked time to CPU time per task (NaN until the first measurement), the
+ * recommended pool size is the last size computed from it, and the
+ * "LastResize" attributes describe the last time the core pool size was
+ * actually changed.
+ */
+public interface TimingThreadPoolMXBean {
+    int getPoolSize();
+
+    int getActiveCount();
+
+    int getQueueSize();
+
+    long getCompletedTaskCount();
+
+    String[] getTaskTypes();
+
+    Map<String, String> getQueueWaitSummaries();
+
+    Map<String, String> getRunTimeSummaries();
+
+    long getQueueWaitPercentile(String taskType, double percentile);
+
+    long getRunTimePercentile(String taskType, double percentile);
+
+    int getCorePoolSize();
+
+    boolean isAdaptive();
+
+    double getTargetUtilization();
+
+    double getWaitComputeRatio();
+
+    int getRecommendedPoolSize();
+
+    long getResizeCount();
+
+    int getLastResizeFrom();
+
+    int getLastResizeTo();
+
+    long getLastResizeTimeMillis();
+}
@@ -1,18 +1,36 @@
 package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.parallelizingrecursivealgorithms;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 /**
  * Transforming sequential execution into parallel execution
  */
 public abstract class TransformingSequential {
+    /**
+     * A chunk should take long enough to make the cost of a fork-join task
+     * negligible, and be short enough to balance the load
+     */
+    private static final long TARGET_CHUNK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * A subtree is forked only while fewer tasks than this wait in the
+     * current worker's deque
+     */
+    private static final int SURPLUS_THRESHOLD = 3;
 
     void processSequentially(final List<Element> elements) {
         for (final Element e : elements) {
@@ -41,6 +59,60 @@ public abstract class TransformingSequential {
         }
     }
 
+    /**
+     * <NOTE_chunked_parallel_loops>
+     *
+     *     When the loop body is cheap, one task per element costs more than
+     *     the element: a Runnable allocated, handed over through the queue
+     *     and taken by a worker for a few nanoseconds of work. The loop is
+     *     then better split into ranges of elements, each processed by one
+     *     task in a plain sequential loop.
+     *
+     *     The right range size depends on what an element costs, so it is
+     *     measured: the first element is processed on the calling thread and
+     *     timed, and the range is sized to take about TARGET_CHUNK_NANOS.
+     *     Timing more elements up front would run them serially while the
+     *     workers sit idle, and one element is a rough estimate anyway;
+     *     instead every finished range records its own cost per element, so
+     *     the size follows the workload from the first ranges on.
+     *     Ranges are split in halves as fork-join tasks, which lets idle
+     *     workers steal the larger halves, and never made smaller than
+     *     needed for CHUNKS_PER_THREAD ranges per worker. The ranges index
+     *     into the list, so it should support fast random access.
+     *
+     *     Processing stops early once an element satisfies "stopAfter":
+     *     the ranges check a shared flag before every element, so elements
+     *     already being processed finish but no new ones start.
+     *
+     * </NOTE_chunked_parallel_loops>
+     *
+     * Returns true if processing stopped early
+     */
+    boolean processInParallel(final ForkJoinPool pool, final List<Element> elements,
+                              final Predicate<Element> stopAfter) {
+        if (elements.isEmpty()) {
+            return false;
+        }
+        final Element first = elements.get(0);
+        final long start = System.nanoTime();
+        this.process(first);
+        final long nanosPerElement = Math.max(1, System.nanoTime() - start);
+        if (stopAfter.test(first)) {
+            return true;
+        }
+        if (elements.size() == 1) {
+            return false;
+        }
+        final ChunkedLoop loop = new ChunkedLoop(elements, stopAfter, nanosPerElement,
+                                                 pool.getParallelism(), 1, elements.size());
+        pool.invoke(loop);
+        return loop.stopped.get();
+    }
+
+    void processInParallel(final ForkJoinPool pool, final List<Element> elements) {
+        this.processInParallel(pool, elements, (e) -> false);
+    }
+
     public abstract void process(Element e);
 
     /**
@@ -97,6 +169,159 @@ public abstract class TransformingSequential {
         return resultQueue;
     }
 
+    private class ChunkedLoop extends RecursiveAction {
+        // ForkJoinTask is serializable, so redefine serialVersionUID
+        static final long serialVersionUID = -6402316384235810567L;
+
+        private final List<Element> elements;
+        private final Predicate<Element> stopAfter;
+        private final AtomicBoolean stopped;
+        private final int parallelism;
+        private final int from;
+        private final int to;
+        /**
+         * Shared by all the ranges of one loop; a racy update only loses a
+         * sample
+         */
+        private volatile long nanosPerElement;
+        private final ChunkedLoop root;
+
+        ChunkedLoop(final List<Element> elements, final Predicate<Element> stopAfter,
+                    final long nanosPerElement, final int parallelism, final int from, final int to) {
+            this.elements = elements;
+            this.stopAfter = stopAfter;
+            this.stopped = new AtomicBoolean();
+            this.parallelism = parallelism;
+            this.from = from;
+            this.to = to;
+            this.nanosPerElement = nanosPerElement;
+            this.root = this;
+        }
+
+        private ChunkedLoop(final ChunkedLoop parent, final int from, final int to) {
+            this.elements = parent.elements;
+            this.stopAfter = parent.stopAfter;
+            this.stopped = parent.stopped;
+            this.parallelism = parent.parallelism;
+            this.from = from;
+            this.to = to;
+            this.root = parent.root;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.stopped.get()) {
+                return;
+            }
+            if (this.to - this.from > this.chunkSize()) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new ChunkedLoop(this, this.from, middle), new ChunkedLoop(this, middle, this.to));
+                return;
+            }
+            final long start = System.nanoTime();
+            int i = this.from;
+            for (; i < this.to && !this.stopped.get(); i++) {
+                final Element e = this.elements.get(i);
+                TransformingSequential.this.process(e);
+                if (this.stopAfter.test(e)) {
+                    this.stopped.set(true);
+                }
+            }
+            if (i > this.from) {
+                this.root.nanosPerElement = Math.max(1, (System.nanoTime() - start) / (i - this.from));
+            }
+        }
+
+        private int chunkSize() {
+            final long bySize = TARGET_CHUNK_NANOS / this.root.nanosPerElement;
+            final long byLoad = (this.root.to - this.root.from) / ((long) this.parallelism * CHUNKS_PER_THREAD);
+            return (int) Math.max(1, Math.min(bySize, byLoad));
+        }
+    }
+
+    /**
+     * <NOTE_fork_join_traversal>
+     *
+     *     parallelRecursive above still walks the tree on one thread,
+     *     submits a task for every node, and collects all the results in one
+     *     shared queue that every worker contends for. With fork-join the
+     *     traversal itself is parallel: the task for a node computes the
+     *     node and forks a task for each child subtree, and each task
+     *     gathers its results in its own local list, which its parent
+     *     appends to its own after "join". No collection is shared, and the
+     *     results come out in the same depth-first order as from
+     *     sequentialRecursive.
+     *
+     *     Forking a task for every node would again cost more than a cheap
+     *     "compute". The size of a subtree is not known without walking it,
+     *     so the threshold is on the demand for work instead: a subtree is
+     *     forked only while the worker has fewer than SURPLUS_THRESHOLD
+     *     queued tasks that nobody has stolen, and leaves are always
+     *     computed inline. Otherwise the subtree is traversed sequentially
+     *     into the task's list.
+     *
+     * </NOTE_fork_join_traversal>
+     */
+    public <T> List<T> parallelRecursive(final ForkJoinPool pool, final List<Node<T>> nodes) {
+        return pool.invoke(new SubtreesTask<>(nodes));
+    }
+
+    private class SubtreesTask<T> extends RecursiveTask<List<T>> {
+        // ForkJoinTask is serializable, so redefine serialVersionUID
+        static final long serialVersionUID = 3914025572937485123L;
+
+        private final List<Node<T>> nodes;
+
+        SubtreesTask(final List<Node<T>> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        protected List<T> compute() {
+            final List<T> results = new ArrayList<>();
+            for (final Node<T> n : this.nodes) {
+                results.add(n.compute());
+                final List<Node<T>> children = n.getChildren();
+                if (children.isEmpty()) {
+                    continue;
+                }
+                if (getSurplusQueuedTaskCount() >= SURPLUS_THRESHOLD) {
+                    TransformingSequential.this.sequentialRecursive(children, results);
+                } else {
+                    this.computeChildren(children, results);
+                }
+            }
+            return results;
+        }
+
+        /**
+         * Forks every child subtree except the last, which this task
+         * computes itself, and joins them in order
+         */
+        private void computeChildren(final List<Node<T>> children, final List<T> results) {
+            final List<SubtreesTask<T>> forked = new ArrayList<>(children.size() - 1);
+            for (final Node<T> child : children.subList(0, children.size() - 1)) {
+                if (child.getChildren().isEmpty()) {
+                    forked.add(null);
+                } else {
+                    final SubtreesTask<T> task = new SubtreesTask<>(Collections.singletonList(child));
+                    task.fork();
+                    forked.add(task);
+                }
+            }
+            final List<T> last = new SubtreesTask<>(children.subList(children.size() - 1, children.size())).compute();
+            for (int i = 0; i < forked.size(); i++) {
+                final SubtreesTask<T> task = forked.get(i);
+                if (task == null) {
+                    results.add(children.get(i).compute());
+                } else {
+                    results.addAll(task.join());
+                }
+            }
+            results.addAll(last);
+        }
+    }
+
     interface Element {
     }
 
@@ -0,0 +1,157 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttling task submission with a limit that adapts to latency
+ *
+ * {@link BoundedExecutor} fixes the number of tasks in flight with a
+ * Semaphore. Any fixed bound is wrong most of the time: too low while the
+ * downstream the tasks call is healthy, too high once it degrades, when the
+ * extra tasks only queue up and make every task slower. Here the bound is
+ * set by a {@link LimitAlgorithm} from the latency of the completed tasks,
+ * e.g. {@link AimdLimit} or {@link GradientLimit}.
+ *
+ * A Semaphore cannot take permits back, so the permits are a counter
+ * guarded by the executor's intrinsic lock, and a submitter waits on the
+ * condition queue until inFlight < limit. Submitters choose how long
+ * they are willing to wait:
+ *
+ *  - submitTask(command) waits as long as it takes, like BoundedExecutor
+ *  - submitTask(command, timeout, unit) gives up after the timeout
+ *  - trySubmitTask(command) rejects at once if the limit is reached, which
+ *    is the right choice under overload: failing fast is cheaper than
+ *    queueing a task that will time out anyway
+ *
+ * A task's latency is measured from acquiring its permit to its
+ * completion, so it includes the time queued in the underlying executor,
+ * which is exactly what grows when the limit is too high. A task that
+ * throws counts as failed.
+ */
+@ThreadSafe
+public class AdaptiveBoundedExecutor implements AdaptiveBoundedExecutorMXBean {
+    private final Executor exec;
+    @GuardedBy("this")
+    private final LimitAlgorithm algorithm;
+    @GuardedBy("this")
+    private int inFlight;
+    @GuardedBy("this")
+    private long rejectedCount;
+
+    public AdaptiveBoundedExecutor(final Executor exec, final LimitAlgorithm algorithm) {
+        this.exec = exec;
+        this.algorithm = algorithm;
+    }
+
+    public void submitTask(final Runnable command) throws InterruptedException {
+        final int admittedInFlight;
+        synchronized (this) {
+            while (this.inFlight >= this.algorithm.getLimit()) {
+                this.wait();
+            }
+            admittedInFlight = ++this.inFlight;
+        }
+        this.execute(command, admittedInFlight);
+    }
+
+    /**
+     * Returns false if no permit became available within the timeout
+     */
+    public boolean submitTask(final Runnable command, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final int admittedInFlight;
+        synchronized (this) {
+            while (this.inFlight >= this.algorithm.getLimit()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    this.rejectedCount++;
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            admittedInFlight = ++this.inFlight;
+        }
+        this.execute(command, admittedInFlight);
+        return true;
+    }
+
+    /**
+     * Returns false at once if the limit is reached
+     */
+    public boolean trySubmitTask(final Runnable command) {
+        final int admittedInFlight;
+        synchronized (this) {
+            if (this.inFlight >= this.algorithm.getLimit()) {
+                this.rejectedCount++;
+                return false;
+            }
+            admittedInFlight = ++this.inFlight;
+        }
+        this.execute(command, admittedInFlight);
+        return true;
+    }
+
+    @Override
+    public synchronized String getAlgorithm() {
+        return this.algorithm.toString();
+    }
+
+    @Override
+    public synchronized int getLimit() {
+        return this.algorithm.getLimit();
+    }
+
+    @Override
+    public synchronized int getInFlight() {
+        return this.inFlight;
+    }
+
+    @Override
+    public synchronized long getRejectedCount() {
+        return this.rejectedCount;
+    }
+
+    /**
+     * Runs the command holding a permit that has already been acquired
+     */
+    private void execute(final Runnable command, final int admittedInFlight) {
+        final long start = System.nanoTime();
+        try {
+            this.exec.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean failed = true;
+                    try {
+                        command.run();
+                        failed = false;
+                    } finally {
+                        AdaptiveBoundedExecutor.this.release(System.nanoTime() - start, admittedInFlight, failed);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            synchronized (this) {
+                this.inFlight--;
+                this.rejectedCount++;
+                this.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The limit may have grown by more than one, so all waiting submitters
+     * are woken up
+     */
+    private synchronized void release(final long latencyNanos, final int admittedInFlight, final boolean failed) {
+        this.inFlight--;
+        this.algorithm.onSample(latencyNanos, admittedInFlight, failed);
+        this.notifyAll();
+    }
+}
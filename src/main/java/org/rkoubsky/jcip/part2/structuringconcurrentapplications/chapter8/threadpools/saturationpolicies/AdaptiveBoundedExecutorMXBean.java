@@ -0,0 +1,14 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+/**
+ * Management interface of {@link AdaptiveBoundedExecutor}
+ */
+public interface AdaptiveBoundedExecutorMXBean {
+    String getAlgorithm();
+
+    int getLimit();
+
+    int getInFlight();
+
+    long getRejectedCount();
+}
@@ -0,0 +1,57 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease
+ *
+ * The limit grows by one for every successful task and is cut by
+ * BACKOFF_RATIO when a task fails or takes longer than the latency
+ * timeout, the way TCP treats a lost packet. It finds the limit at
+ * which the downstream starts to fail and then oscillates just below it.
+ *
+ * The limit only grows while at least half of it is actually in use;
+ * otherwise a quiet period would let it grow without bound, and the
+ * first burst after it would hit the downstream unthrottled.
+ */
+@NotThreadSafe
+public class AimdLimit implements LimitAlgorithm {
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long timeoutNanos;
+    private int limit;
+
+    public AimdLimit(final int initialLimit, final int minLimit, final int maxLimit,
+                     final long timeout, final TimeUnit unit) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException();
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public int getLimit() {
+        return this.limit;
+    }
+
+    @Override
+    public void onSample(final long latencyNanos, final int inFlight, final boolean failed) {
+        if (failed || latencyNanos > this.timeoutNanos) {
+            this.limit = Math.max(this.minLimit, (int) (this.limit * BACKOFF_RATIO));
+        } else if (inFlight * 2 >= this.limit) {
+            this.limit = Math.min(this.maxLimit, this.limit + 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "aimd";
+    }
+}
@@ -21,6 +21,9 @@ import java.util.concurrent.Semaphore;
  * be equal to the pool size plus the number of queued tasks you want to allow,
  * since the semaphore is bounding the number of tasks both currently executing
  * and awaiting execution.
+ *
+ * {@link AdaptiveBoundedExecutor} adjusts the bound to the observed task
+ * latency instead.
  */
 @ThreadSafe
 public class BoundedExecutor {
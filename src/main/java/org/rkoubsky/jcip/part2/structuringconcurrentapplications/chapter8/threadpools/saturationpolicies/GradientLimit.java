@@ -0,0 +1,84 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Latency-gradient limit in the style of TCP Vegas
+ *
+ * AIMD has to cause failures to find the limit. Vegas instead watches the
+ * latency: the lowest latency seen is taken as the latency of the
+ * downstream without load, and any latency above it means tasks are
+ * queueing somewhere. The gradient
+ *
+ *      gradient = noLoadLatency / latency      (within [0.5, 1])
+ *
+ * is 1 while nothing queues and drops as queues build up, and the new
+ * limit is
+ *
+ *      newLimit = limit * gradient + sqrt(limit)
+ *
+ * The sqrt(limit) term is the queue we allow on purpose: without it the
+ * limit could only shrink. The limit moves towards newLimit by SMOOTHING
+ * per sample, so one slow task does not halve it.
+ *
+ * The no-load latency is only seen when the load is low, so the limit
+ * should start low and climb. A downstream that has become slower for
+ * good would look permanently overloaded against a no-load latency
+ * measured before, and one that has become faster would never be seen to
+ * be, so every PROBE_INTERVAL samples the limit is halved and the no-load
+ * latency measured again from the samples that follow. Without the drop,
+ * the new no-load latency would be measured under the current load and
+ * the limit would creep up with every probe.
+ */
+@NotThreadSafe
+public class GradientLimit implements LimitAlgorithm {
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final int PROBE_INTERVAL = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private long noLoadLatencyNanos = Long.MAX_VALUE;
+    private int samplesSinceProbe;
+
+    public GradientLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+        if (minLimit <= 0 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException();
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    @Override
+    public void onSample(final long latencyNanos, final int inFlight, final boolean failed) {
+        if (++this.samplesSinceProbe >= PROBE_INTERVAL) {
+            this.samplesSinceProbe = 0;
+            this.noLoadLatencyNanos = Long.MAX_VALUE;
+            this.limit = Math.max(this.minLimit, this.limit / 2);
+        }
+        final long latency = Math.max(1, latencyNanos);
+        this.noLoadLatencyNanos = Math.min(this.noLoadLatencyNanos, latency);
+
+        final double gradient = failed ? MIN_GRADIENT
+                : Math.max(MIN_GRADIENT, Math.min(1.0, (double) this.noLoadLatencyNanos / latency));
+        double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+        if (inFlight * 2 < this.limit) {
+            // not using the limit, so latency says nothing about a higher one
+            newLimit = Math.min(newLimit, this.limit);
+        }
+        this.limit = (1 - SMOOTHING) * this.limit + SMOOTHING * newLimit;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, this.limit));
+    }
+
+    @Override
+    public String toString() {
+        return "gradient";
+    }
+}
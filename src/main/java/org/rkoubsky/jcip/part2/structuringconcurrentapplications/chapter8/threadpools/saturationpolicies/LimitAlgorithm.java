@@ -0,0 +1,16 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+/**
+ * Computes the concurrency limit of an {@link AdaptiveBoundedExecutor}
+ *
+ * The executor reports every completed task: its latency (from acquiring
+ * the permit to finishing), the number of tasks in flight when it was
+ * admitted, and whether it failed. The algorithm answers with the new
+ * limit. Implementations are called with the executor's lock held and need
+ * no synchronization of their own.
+ */
+public interface LimitAlgorithm {
+    int getLimit();
+
+    void onSample(long latencyNanos, int inFlight, boolean failed);
+}
@@ -0,0 +1,112 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.starvationdeadlock;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor whose pool threads help instead of blocking on each other's tasks
+ *
+ * ThreadDeadLock deadlocks because the only pool thread blocks in "get"
+ * waiting for a task that can only run on a pool thread. A bigger pool only
+ * moves the problem to a deeper nesting of tasks. In HelpingExecutor the
+ * futures know which pool they belong to, and a "get" called from one of
+ * that pool's own threads does not simply park:
+ *
+ *  - if the awaited task is still in the work queue, it is removed from
+ *    the queue and run inline by the caller
+ *  - otherwise it is already running (or done), and the caller blocks
+ *    as it would in any pool
+ *
+ * The caller must not run unrelated queued tasks while it waits: such a
+ * task may itself wait for a task lower on the same stack (e.g. for the
+ * very task that is helping), and the thread would then wait for itself.
+ * Running only the awaited task is safe, because it is a task the caller
+ * depends on anyway, and a blocked caller only ever waits for a task that
+ * has a thread of its own. Every chain of waits therefore ends in a thread
+ * that makes progress, and with the task dependencies free of cycles the
+ * whole fan-out/fan-in completes.
+ *
+ * Nested fan-out/fan-in, like RenderPageTask, then completes on any pool
+ * size, even a single thread, without creating threads. The price is that
+ * a task run inline runs on the stack of the waiting task: nesting is
+ * bounded by the stack, and beforeExecute and afterExecute are not called
+ * for it. A "get" from outside the pool blocks as usual.
+ *
+ * This is what ForkJoinPool does for "join"; HelpingExecutor brings it to
+ * a plain ThreadPoolExecutor with a FIFO queue and ordinary Futures.
+ */
+@ThreadSafe
+public class HelpingExecutor extends ThreadPoolExecutor {
+
+    public HelpingExecutor(final int nThreads) {
+        super(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        this.setThreadFactory(PoolThread::new);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new HelpingFuture<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new HelpingFuture<>(callable);
+    }
+
+    private boolean isPoolThread() {
+        final Thread current = Thread.currentThread();
+        return current instanceof PoolThread && ((PoolThread) current).pool() == this;
+    }
+
+    private class PoolThread extends Thread {
+        PoolThread(final Runnable worker) {
+            super(worker);
+        }
+
+        HelpingExecutor pool() {
+            return HelpingExecutor.this;
+        }
+    }
+
+    private class HelpingFuture<V> extends FutureTask<V> {
+        HelpingFuture(final Callable<V> callable) {
+            super(callable);
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            if (!this.isDone() && HelpingExecutor.this.isPoolThread()) {
+                this.help();
+            }
+            return super.get();
+        }
+
+        @Override
+        public V get(final long timeout, final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            if (!this.isDone() && HelpingExecutor.this.isPoolThread()) {
+                this.help();
+            }
+            return super.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Runs this task inline if no pool thread has taken it yet
+         */
+        private void help() {
+            if (HelpingExecutor.this.getQueue().remove(this)) {
+                this.run();
+            }
+        }
+    }
+}
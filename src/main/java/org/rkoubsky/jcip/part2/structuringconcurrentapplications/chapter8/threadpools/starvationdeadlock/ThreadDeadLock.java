@@ -27,6 +27,12 @@ import java.util.concurrent.Future;
  *     In a single-threaded executor, a task that submits another task to
  *     the same executor and waits for its result will always deadlock.
  *
+ *     {@link HelpingExecutor} avoids it when a pool thread waits for a
+ *     task of the same pool that has not started yet: the waiting thread
+ *     runs the awaited task inline if it is still queued, and only blocks
+ *     if another thread already runs it. With it as "exec", RenderPageTask
+ *     completes.
+ *
  * </NOTE_starvation_deadlock>
  *
  * <NOTE_implicit_coupling_between_task_and_execution_policies>
@@ -0,0 +1,109 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.atomicvariableclasses;
+
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part1.fundamentals.chapter4.composingobjects.delegatingthreadsafety.faileddelegation.NumberRange;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preserving multivariable invariants using CAS on a single packed variable
+ *
+ * {@link CasNumberRange} holds the bounds in an immutable IntPair and
+ * replaces the whole pair with "compareAndSet", so every update attempt,
+ * including the ones whose CAS fails, allocates a new IntPair.
+ *
+ * Two int bounds fit into one long, so PackedCasNumberRange keeps both of
+ * them in a single {@link AtomicLong}: the lower bound in the high 32 bits
+ * and the upper bound in the low 32 bits. An update computes the new long
+ * from the old one, checks the invariant and installs it with one CAS,
+ * without allocating anything.
+ *
+ * Because both bounds are read with a single "get", the range can also
+ * offer compound operations that {@link NumberRange} and CasNumberRange
+ * cannot express safely through their setters: replacing both bounds at
+ * once ("setRange"), checking a value against a consistent pair of bounds
+ * ("contains") and extending the range to include another one ("widen").
+ */
+@ThreadSafe
+public class PackedCasNumberRange {
+    // INVARIANT: lower <= upper
+    private final AtomicLong values = new AtomicLong(pack(0, 0));
+
+    public int getLower() {
+        return lowerOf(this.values.get());
+    }
+
+    public int getUpper() {
+        return upperOf(this.values.get());
+    }
+
+    public void setLower(final int i) {
+        while (true) {
+            final long oldv = this.values.get();
+            if (i > upperOf(oldv)) {
+                throw new IllegalArgumentException("Can't set lower to " + i + " > upper");
+            }
+            if (this.values.compareAndSet(oldv, pack(i, upperOf(oldv)))) {
+                return;
+            }
+        }
+    }
+
+    public void setUpper(final int i) {
+        while (true) {
+            final long oldv = this.values.get();
+            if (i < lowerOf(oldv)) {
+                throw new IllegalArgumentException("Can't set upper to " + i + " < lower");
+            }
+            if (this.values.compareAndSet(oldv, pack(lowerOf(oldv), i))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces both bounds atomically. Moving a range past its current
+     * bounds, e.g. from (0, 10) to (20, 30), is not possible with "setLower"
+     * and "setUpper" in any order without passing through an invalid state.
+     */
+    public void setRange(final int lower, final int upper) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Can't set lower to " + lower + " > upper " + upper);
+        }
+        this.values.set(pack(lower, upper));
+    }
+
+    public boolean contains(final int i) {
+        final long v = this.values.get();
+        return i >= lowerOf(v) && i <= upperOf(v);
+    }
+
+    /**
+     * Extends the range so that it includes (lower, upper) as well. Widening
+     * can never violate the invariant, so it never fails.
+     */
+    public void widen(final int lower, final int upper) {
+        if (lower > upper) {
+            throw new IllegalArgumentException("Can't widen by lower " + lower + " > upper " + upper);
+        }
+        while (true) {
+            final long oldv = this.values.get();
+            final long newv = pack(Math.min(lower, lowerOf(oldv)), Math.max(upper, upperOf(oldv)));
+            if (newv == oldv || this.values.compareAndSet(oldv, newv)) {
+                return;
+            }
+        }
+    }
+
+    private static long pack(final int lower, final int upper) {
+        return ((long) lower << 32) | (upper & 0xFFFFFFFFL);
+    }
+
+    private static int lowerOf(final long v) {
+        return (int) (v >> 32);
+    }
+
+    private static int upperOf(final long v) {
+        return (int) v;
+    }
+}
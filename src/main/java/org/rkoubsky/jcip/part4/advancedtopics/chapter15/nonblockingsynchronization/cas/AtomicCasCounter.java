@@ -0,0 +1,40 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.cas;
+
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part1.fundamentals.chapter4.composingobjects.classdesign.Counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nonblocking counter using hardware CAS
+ *
+ * AtomicCasCounter has the same structure as {@link CasCounter}, but the
+ * CAS is a single compare-and-swap instruction on {@link AtomicLong} rather
+ * than the synchronized methods of {@link SimulatedCAS}. It keeps the
+ * invariant of {@link Counter}: the value never overflows past
+ * Long.MAX_VALUE.
+ *
+ * Under low to moderate contention it is much faster than the lock-based
+ * counters, but every increment still writes the same memory location, so
+ * with many threads the cache line holding it bounces between cores and
+ * failed CAS attempts pile up.
+ */
+@ThreadSafe
+public class AtomicCasCounter {
+    private final AtomicLong value = new AtomicLong();
+
+    public long getValue() {
+        return this.value.get();
+    }
+
+    public long increment() {
+        long v;
+        do {
+            v = this.value.get();
+            if (v == Long.MAX_VALUE) {
+                throw new IllegalStateException("counter overflow");
+            }
+        } while (!this.value.compareAndSet(v, v + 1));
+        return v + 1;
+    }
+}
@@ -18,7 +18,7 @@ import net.jcip.annotations.ThreadSafe;
  */
 @ThreadSafe
 public class CasCounter {
-    private SimulatedCAS value;
+    private final SimulatedCAS value = new SimulatedCAS();
 
     public int getValue() {
         return this.value.get();
@@ -0,0 +1,122 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.cas;
+
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part1.fundamentals.chapter4.composingobjects.classdesign.Counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Striped counter with overflow checking
+ *
+ * A counter contended by many threads does not scale no matter how cheap its
+ * CAS is, because all threads update the same variable. StripedCounter, like
+ * {@link LongAdder}, spreads the increments over several cells; each thread
+ * usually increments its own cell, and the value is the sum of all cells.
+ * If a CAS on a cell fails, another thread is using the same cell, and the
+ * thread moves on to a different one.
+ *
+ * The price is that there is no single variable holding the value: "getValue"
+ * is not an atomic snapshot if increments are in progress, and "increment"
+ * cannot return the new value.
+ *
+ * <NOTE_overflow_budget>
+ *
+ *     {@link Counter} rejects an increment that would overflow Long.MAX_VALUE.
+ *     With striping, no thread knows the total without summing all the cells.
+ *     Instead, each cell may only count up to its own limit, and a cell whose
+ *     limit is reached reserves another chunk of the Long.MAX_VALUE budget from
+ *     a shared AtomicLong. Since the limits never add up to more than
+ *     Long.MAX_VALUE, neither can the sum of the cells.
+ *
+ *     The check is conservative: an increment fails once the whole budget is
+ *     reserved, even if other cells have not used up their chunks yet.
+ *
+ * </NOTE_overflow_budget>
+ *
+ * The cells live in one AtomicLongArray, STRIDE longs apart, so that two cells
+ * never share a cache line. Each cell holds its count at offset 0 and its
+ * limit at offset 1.
+ */
+@ThreadSafe
+public class StripedCounter {
+    private static final int STRIDE = 8;
+    private static final long CHUNK = 1024;
+    private static final int NCELLS = Integer.highestOneBit(
+            Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) * 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(NCELLS * STRIDE);
+    private final AtomicLong reserved = new AtomicLong();
+    private final long budget;
+    private final ThreadLocal<int[]> probe = ThreadLocal.withInitial(
+            () -> new int[]{mix((int) Thread.currentThread().getId())});
+
+    public StripedCounter() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * A counter that overflows after "budget" increments instead of
+     * Long.MAX_VALUE, so that tests can reach the overflow
+     */
+    StripedCounter(final long budget) {
+        this.budget = budget;
+    }
+
+    public long getValue() {
+        long sum = 0;
+        for (int i = 0; i < NCELLS; i++) {
+            sum += this.cells.get(i * STRIDE);
+        }
+        return sum;
+    }
+
+    public void increment() {
+        final int[] threadProbe = this.probe.get();
+        int cell = (threadProbe[0] & (NCELLS - 1)) * STRIDE;
+        while (true) {
+            final long count = this.cells.get(cell);
+            if (count < this.cells.get(cell + 1)) {
+                if (this.cells.compareAndSet(cell, count, count + 1)) {
+                    return;
+                }
+                // Contended cell, move this thread to another one
+                threadProbe[0] = mix(threadProbe[0]);
+                cell = (threadProbe[0] & (NCELLS - 1)) * STRIDE;
+            } else {
+                final long grant = this.reserve();
+                if (grant == 0) {
+                    throw new IllegalStateException("counter overflow");
+                }
+                this.cells.getAndAdd(cell + 1, grant);
+            }
+        }
+    }
+
+    private long reserve() {
+        long r;
+        long grant;
+        do {
+            r = this.reserved.get();
+            grant = Math.min(CHUNK, this.budget - r);
+            if (grant == 0) {
+                return 0;
+            }
+        } while (!this.reserved.compareAndSet(r, r + grant));
+        return grant;
+    }
+
+    /**
+     * Xorshift step; maps any nonzero value to another nonzero value.
+     */
+    private static int mix(int x) {
+        if (x == 0) {
+            x = 1;
+        }
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        return x;
+    }
+}
@@ -0,0 +1,400 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part1.fundamentals.chapter5.buildingblocks.blockingqueues.ProducerConsumer;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter7.cancellationandshutdown.shutdown.poisonpills.IndexingService;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Blocking adapter for the Michael-Scott nonblocking queue
+ *
+ * BlockingLinkedQueue implements {@link BlockingQueue} on top of
+ * {@link LinkedQueue}, so it can be used wherever a {@link LinkedBlockingQueue}
+ * is used, for example in {@link ProducerConsumer} or {@link IndexingService}.
+ *
+ * The elements themselves never pass through a lock; "put" and "take" only
+ * block when the queue is full or empty. The optional capacity is enforced
+ * by reserving a slot with CAS on an element counter before inserting.
+ *
+ * <NOTE_spin_then_park>
+ *
+ *     Parking a thread and waking it up again costs a context switch on both
+ *     sides, which is often much more than the time until the next element
+ *     arrives. A waiting thread therefore first retries according to its
+ *     {@link WaitStrategy} (by default, spinning for a short while) and
+ *     parks only when the strategy gives up.
+ *
+ *     Before parking, the thread publishes a Waiter node in a LinkedQueue of
+ *     waiters and then checks the queue once more. The thread changing the
+ *     state (inserting or removing an element) first changes it and then
+ *     claims one waiter. Because both sides write before they read, at least
+ *     one of them sees the other, and no wakeup is lost.
+ *
+ *     A waiter that leaves without being woken up cancels its node; a waiter
+ *     that was woken up but leaves anyway (timeout, interrupt, or it got an
+ *     element on its own) passes the wakeup on to the next waiter.
+ *
+ *     A thread keeps one Waiter for the whole call: after a spurious wakeup
+ *     its node is still in the queue and it just checks and parks again,
+ *     and only after a real wakeup, which removed the node, does it publish
+ *     the Waiter again. The nonblocking queue cannot unlink a node from the
+ *     middle, so cancelled nodes stay in it until they reach the head. To
+ *     keep a thread parked at the head from holding up an unbounded number
+ *     of cancelled nodes behind it, a leaving waiter that finds more than
+ *     MAX_CANCELLED of them removes nodes from the head: cancelled ones are
+ *     dropped, live ones are woken up and publish themselves again.
+ *
+ * </NOTE_spin_then_park>
+ */
+@ThreadSafe
+public class BlockingLinkedQueue <E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final LinkedQueue<E> queue = new LinkedQueue<>();
+    private static final int MAX_CANCELLED = 16;
+
+    private final BlockingLinkedQueue.Waiters notEmpty = new BlockingLinkedQueue.Waiters();
+    private final BlockingLinkedQueue.Waiters notFull = new BlockingLinkedQueue.Waiters();
+    private final AtomicInteger count = new AtomicInteger();
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+
+    public BlockingLinkedQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public BlockingLinkedQueue(final int capacity) {
+        this(capacity, WaitStrategy.spinThenPark(64, 0));
+    }
+
+    public BlockingLinkedQueue(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public void put(final E e) throws InterruptedException {
+        this.offer(e, false, 0L);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (!this.tryReserve()) {
+            return false;
+        }
+        this.enqueue(e);
+        return true;
+    }
+
+    @Override
+    public boolean offer(final E e, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.offer(e, true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        return this.poll(false, 0L);
+    }
+
+    @Override
+    public E poll() {
+        return this.dequeue();
+    }
+
+    @Override
+    public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.poll(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E peek() {
+        return this.queue.peek();
+    }
+
+    @Override
+    public int size() {
+        return this.count.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return this.capacity - this.count.get();
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        try {
+            E item;
+            while (n < maxElements && (item = this.queue.poll()) != null) {
+                try {
+                    c.add(item);
+                } catch (final RuntimeException | Error e) {
+                    // Still counted, so it goes back without a slot being reserved
+                    this.enqueue(item);
+                    throw e;
+                }
+                n++;
+            }
+        } finally {
+            // The elements already handed over free their slots even if the collection threw
+            if (n > 0) {
+                this.count.addAndGet(-n);
+                for (int i = 0; i < n; i++) {
+                    this.notFull.signal();
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * The iterator is weakly consistent and does not support removal, so
+     * neither do "remove(Object)" and the other bulk removal methods inherited
+     * from AbstractCollection.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return this.queue.iterator();
+    }
+
+    /**
+     * Waiter nodes in both waiter queues, live or cancelled
+     */
+    int waiterCount() {
+        return this.notEmpty.waiters.size() + this.notFull.waiters.size();
+    }
+
+    private boolean offer(final E e, final boolean timed, long nanos) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int attempts = 0;
+        do {
+            if (this.tryReserve()) {
+                this.enqueue(e);
+                return true;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timed && deadline - System.nanoTime() <= 0L) {
+                return false;
+            }
+        } while (this.waitStrategy.idle(attempts++));
+        final BlockingLinkedQueue.Waiter w = new BlockingLinkedQueue.Waiter();
+        this.notFull.put(w);
+        while (true) {
+            if (this.tryReserve()) {
+                this.notFull.leave(w);
+                this.enqueue(e);
+                return true;
+            }
+            if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    this.notFull.leave(w);
+                    return false;
+                }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                this.notFull.leave(w);
+                throw new InterruptedException();
+            }
+            /*
+             * If we were woken up, we consume the wakeup by checking again
+             * ourselves, registered again so that the next wakeup reaches us.
+             */
+            if (w.rearmIfClaimed()) {
+                this.notFull.put(w);
+            }
+        }
+    }
+
+    private E poll(final boolean timed, long nanos) throws InterruptedException {
+        E x;
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        int attempts = 0;
+        do {
+            if ((x = this.dequeue()) != null) {
+                return x;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timed && deadline - System.nanoTime() <= 0L) {
+                return null;
+            }
+        } while (this.waitStrategy.idle(attempts++));
+        final BlockingLinkedQueue.Waiter w = new BlockingLinkedQueue.Waiter();
+        this.notEmpty.put(w);
+        while (true) {
+            if ((x = this.dequeue()) != null) {
+                this.notEmpty.leave(w);
+                return x;
+            }
+            if (timed) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    this.notEmpty.leave(w);
+                    return null;
+                }
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                this.notEmpty.leave(w);
+                throw new InterruptedException();
+            }
+            /*
+             * If we were woken up, we consume the wakeup by checking again
+             * ourselves, registered again so that the next wakeup reaches us.
+             */
+            if (w.rearmIfClaimed()) {
+                this.notEmpty.put(w);
+            }
+        }
+    }
+
+    /**
+     * Reserves a slot for a new element, the same way "CasCounter" increments
+     * its value, but never beyond the capacity.
+     */
+    private boolean tryReserve() {
+        int c;
+        do {
+            c = this.count.get();
+            if (c >= this.capacity) {
+                return false;
+            }
+        } while (!this.count.compareAndSet(c, c + 1));
+        return true;
+    }
+
+    private void enqueue(final E e) {
+        this.queue.put(e);
+        this.notEmpty.signal();
+    }
+
+    private E dequeue() {
+        final E x = this.queue.poll();
+        if (x != null) {
+            this.count.getAndDecrement();
+            this.notFull.signal();
+        }
+        return x;
+    }
+
+    /**
+     * The threads waiting for one condition, and the number of cancelled
+     * nodes still among them
+     */
+    private static class Waiters {
+        final LinkedQueue<BlockingLinkedQueue.Waiter> waiters = new LinkedQueue<>();
+        final AtomicInteger cancelled = new AtomicInteger();
+
+        void put(final BlockingLinkedQueue.Waiter w) {
+            this.waiters.put(w);
+        }
+
+        /**
+         * Wakes up the oldest waiter that has not left yet, if there is any.
+         */
+        void signal() {
+            BlockingLinkedQueue.Waiter w;
+            while ((w = this.waiters.poll()) != null) {
+                if (w.claim()) {
+                    return;
+                }
+                this.cancelled.decrementAndGet();
+            }
+        }
+
+        /**
+         * If the waiter has already been claimed by "signal", the wakeup was
+         * meant for someone waiting on this condition, so it is passed on.
+         * Otherwise its node stays behind cancelled.
+         */
+        void leave(final BlockingLinkedQueue.Waiter w) {
+            if (!w.cancel()) {
+                this.signal();
+                return;
+            }
+            if (this.cancelled.incrementAndGet() > MAX_CANCELLED) {
+                this.purge();
+            }
+        }
+
+        /**
+         * Removes nodes from the head until at most MAX_CANCELLED cancelled
+         * ones are left. A live waiter removed on the way is woken up, which
+         * to it is a spurious wakeup: it checks its condition and publishes
+         * itself again.
+         */
+        private void purge() {
+            BlockingLinkedQueue.Waiter w;
+            while (this.cancelled.get() > MAX_CANCELLED && (w = this.waiters.poll()) != null) {
+                if (!w.claim()) {
+                    this.cancelled.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static class Waiter {
+        final AtomicReference<Thread> thread = new AtomicReference<>(Thread.currentThread());
+
+        /**
+         * After a real wakeup, makes the waiter ready to be published again;
+         * returns false after a spurious one, when it is still published
+         */
+        boolean rearmIfClaimed() {
+            return this.thread.compareAndSet(null, Thread.currentThread());
+        }
+
+        boolean claim() {
+            final Thread t = this.thread.getAndSet(null);
+            if (t == null) {
+                return false;
+            }
+            LockSupport.unpark(t);
+            return true;
+        }
+
+        /**
+         * Returns false if the waiter has already been claimed by "signal".
+         */
+        boolean cancel() {
+            return this.thread.getAndSet(null) != null;
+        }
+    }
+}
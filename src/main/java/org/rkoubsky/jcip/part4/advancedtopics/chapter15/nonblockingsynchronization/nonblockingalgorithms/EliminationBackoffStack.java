@@ -0,0 +1,226 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicStampedReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Nonblocking stack with elimination backoff
+ *
+ * In {@link ConcurrentStack} every thread competes for the single "top"
+ * reference, so under heavy contention most CAS attempts fail and the
+ * throughput collapses.
+ *
+ * EliminationBackoffStack observes that a "push" followed immediately by
+ * a "pop" leaves the stack unchanged. When the CAS on "top" fails, instead
+ * of retrying right away the thread backs off into an elimination array
+ * and waits for a short while on a randomly chosen slot. If a pushing and
+ * a popping thread meet in the same slot, the pusher hands its item to the
+ * popper directly and both return without touching "top" at all.
+ *
+ * The stack remains linearizable: an eliminated push/pop pair is linearized
+ * at the point of the exchange, push first and pop immediately after, which
+ * is indistinguishable from the two operations succeeding on "top" back to
+ * back.
+ *
+ * <NOTE_adaptive_elimination_range>
+ *
+ *     A large elimination array makes it unlikely that two threads meet;
+ *     a small one makes threads collide with partners of the same kind.
+ *     Every thread therefore only uses a prefix of the array (its range),
+ *     which grows when exchanges succeed (many partners are around) and
+ *     shrinks when they time out (too few partners for so many slots).
+ *
+ * </NOTE_adaptive_elimination_range>
+ */
+@ThreadSafe
+public class EliminationBackoffStack <E> {
+    private static final int CAPACITY = Runtime.getRuntime().availableProcessors();
+    private static final int SPINS = 128;
+
+    private final AtomicReference<EliminationBackoffStack.Node<E>> top = new AtomicReference<>();
+    private final EliminationBackoffStack.EliminationArray eliminationArray =
+            new EliminationBackoffStack.EliminationArray(CAPACITY);
+    private final ThreadLocal<EliminationBackoffStack.RangePolicy> policy =
+            ThreadLocal.withInitial(() -> new EliminationBackoffStack.RangePolicy(CAPACITY));
+    private final LongAdder eliminations = new LongAdder();
+    private final BooleanSupplier lostRace;
+
+    public EliminationBackoffStack() {
+        this(() -> false);
+    }
+
+    /**
+     * For tests that need contention on "top": whenever lostRace returns
+     * true, a CAS on "top" is treated as failed, which sends threads into the
+     * elimination array even where real CAS failures are rare (e.g. on a
+     * single CPU)
+     */
+    EliminationBackoffStack(final BooleanSupplier lostRace) {
+        this.lostRace = lostRace;
+    }
+
+    /**
+     * Number of push/pop pairs that met in the elimination array
+     */
+    long eliminations() {
+        return this.eliminations.sum();
+    }
+
+    public void push(final E item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        final EliminationBackoffStack.Node<E> newHead = new EliminationBackoffStack.Node<>(item);
+        while (true) {
+            if (this.tryPush(newHead)) {
+                return;
+            }
+            final EliminationBackoffStack.RangePolicy rangePolicy = this.policy.get();
+            final Object other = this.eliminationArray.visit(item, rangePolicy.range);
+            if (other == null) {
+                // Met a popper, which took our item
+                rangePolicy.recordEliminationSuccess();
+                return;
+            } else if (other == EliminationBackoffStack.Exchanger.TIMEOUT) {
+                rangePolicy.recordEliminationTimeout();
+            }
+            // Met another pusher, retry on top
+        }
+    }
+
+    public E pop() {
+        while (true) {
+            final EliminationBackoffStack.Node<E> oldHead = this.top.get();
+            if (oldHead == null) {
+                return null;
+            }
+            if (!this.lostRace.getAsBoolean() && this.top.compareAndSet(oldHead, oldHead.next)) {
+                return oldHead.item;
+            }
+            final EliminationBackoffStack.RangePolicy rangePolicy = this.policy.get();
+            final Object other = this.eliminationArray.visit(null, rangePolicy.range);
+            if (other == EliminationBackoffStack.Exchanger.TIMEOUT) {
+                rangePolicy.recordEliminationTimeout();
+            } else if (other != null) {
+                // Met a pusher, take its item
+                this.eliminations.increment();
+                rangePolicy.recordEliminationSuccess();
+                return (E) other;
+            }
+            // Met another popper, retry on top
+        }
+    }
+
+    private boolean tryPush(final EliminationBackoffStack.Node<E> newHead) {
+        final EliminationBackoffStack.Node<E> oldHead = this.top.get();
+        newHead.next = oldHead;
+        return !this.lostRace.getAsBoolean() && this.top.compareAndSet(oldHead, newHead);
+    }
+
+    private static class Node <E> {
+        public final E item;
+        public EliminationBackoffStack.Node<E> next;
+
+        public Node(final E item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * Per-thread size of the used prefix of the elimination array. It is only
+     * ever accessed by its owning thread, so it needs no synchronization.
+     */
+    private static class RangePolicy {
+        private final int maxRange;
+        int range;
+
+        RangePolicy(final int maxRange) {
+            this.maxRange = maxRange;
+            this.range = maxRange;
+        }
+
+        void recordEliminationSuccess() {
+            if (this.range < this.maxRange) {
+                this.range++;
+            }
+        }
+
+        void recordEliminationTimeout() {
+            if (this.range > 1) {
+                this.range--;
+            }
+        }
+    }
+
+    private static class EliminationArray {
+        private final EliminationBackoffStack.Exchanger[] exchangers;
+
+        EliminationArray(final int capacity) {
+            this.exchangers = new EliminationBackoffStack.Exchanger[capacity];
+            for (int i = 0; i < capacity; i++) {
+                this.exchangers[i] = new EliminationBackoffStack.Exchanger();
+            }
+        }
+
+        Object visit(final Object value, final int range) {
+            final int slot = ThreadLocalRandom.current().nextInt(range);
+            return this.exchangers[slot].exchange(value, SPINS);
+        }
+    }
+
+    /**
+     * Lock-free exchanger
+     *
+     * The slot goes through three states: EMPTY, WAITING (a first thread has
+     * put its value in and spins) and BUSY (a second thread has swapped in its
+     * own value, which the first thread picks up before resetting the slot).
+     * The state is kept in the stamp, so the value and the state change with
+     * one CAS.
+     */
+    private static class Exchanger {
+        static final Object TIMEOUT = new Object();
+        private static final int EMPTY = 0, WAITING = 1, BUSY = 2;
+        private final AtomicStampedReference<Object> slot = new AtomicStampedReference<>(null, EMPTY);
+
+        Object exchange(final Object myItem, int spins) {
+            final int[] stampHolder = {EMPTY};
+            while (spins-- > 0) {
+                Object herItem = this.slot.get(stampHolder);
+                switch (stampHolder[0]) {
+                    case EMPTY:
+                        if (this.slot.compareAndSet(herItem, myItem, EMPTY, WAITING)) {
+                            while (spins-- > 0) {
+                                herItem = this.slot.get(stampHolder);
+                                if (stampHolder[0] == BUSY) {
+                                    this.slot.set(null, EMPTY);
+                                    return herItem;
+                                }
+                            }
+                            if (this.slot.compareAndSet(myItem, null, WAITING, EMPTY)) {
+                                return TIMEOUT;
+                            }
+                            // A partner arrived just before we gave up
+                            herItem = this.slot.get(stampHolder);
+                            this.slot.set(null, EMPTY);
+                            return herItem;
+                        }
+                        break;
+                    case WAITING:
+                        if (this.slot.compareAndSet(herItem, myItem, WAITING, BUSY)) {
+                            return herItem;
+                        }
+                        break;
+                    case BUSY:
+                    default:
+                        break;
+                }
+            }
+            return TIMEOUT;
+        }
+    }
+}
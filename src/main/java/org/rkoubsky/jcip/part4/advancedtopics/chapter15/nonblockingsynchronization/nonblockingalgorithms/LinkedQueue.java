@@ -2,6 +2,9 @@ package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronizat
 
 import net.jcip.annotations.ThreadSafe;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -12,12 +15,28 @@ import java.util.concurrent.atomic.AtomicReference;
  * maintains separate head and tail pointers. Two pointers refer to the
  * node at the tail: the "next" pointer of the current last element, and
  * the tail pointer.
+ *
+ * Removal (the "poll" method) only ever touches the head pointer, so
+ * producers and consumers contend on different atomic references. The
+ * head always points to a dummy node; the first real element is the node
+ * after it. Removing an element swings the head to that node, which then
+ * becomes the new dummy.
+ *
+ * Null elements are not permitted, because "poll" and "peek" use null
+ * to report an empty queue.
+ *
+ * {@link BlockingLinkedQueue} adapts this queue to the BlockingQueue
+ * interface.
  */
 @ThreadSafe
 public class LinkedQueue <E> {
 
     private static class Node <E> {
-        final E item;
+        /**
+         * Nulled out by "poll" once the node becomes the new dummy, so that
+         * the queue does not retain a reference to the removed element.
+         */
+        volatile E item;
         final AtomicReference<Node<E>> next;
 
         public Node(final E item, final LinkedQueue.Node<E> next) {
@@ -61,6 +80,9 @@ public class LinkedQueue <E> {
      * in its step B!
      */
     public boolean put(final E item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
         final LinkedQueue.Node<E> newNode = new LinkedQueue.Node<E>(item, null);
         while (true) {
             final LinkedQueue.Node<E> curTail = this.tail.get();
@@ -80,4 +102,146 @@ public class LinkedQueue <E> {
             }
         }
     }
+
+    /**
+     * Removal in the Michael-Scott algorithm
+     *
+     * The queue is empty if the dummy node at the head has no successor.
+     * If head and tail refer to the same node but that node has a successor,
+     * an insertion is in the intermediate state; the removing thread helps
+     * it by advancing the tail pointer first, otherwise the head could
+     * overtake the tail. Only then it tries to swing the head to the first
+     * element.
+     *
+     * The item is read before the head CAS; once the CAS succeeds, the node
+     * becomes the new dummy and its item is cleared.
+     */
+    public E poll() {
+        while (true) {
+            final LinkedQueue.Node<E> curHead = this.head.get();
+            final LinkedQueue.Node<E> curTail = this.tail.get();
+            final LinkedQueue.Node<E> first = curHead.next.get();
+            if (curHead == this.head.get()) {
+                if (curHead == curTail) {
+                    if (first == null) {
+                        return null;
+                    }
+                    // Insertion in intermediate state, advance tail
+                    this.tail.compareAndSet(curTail, first);
+                } else {
+                    final E item = first.item;
+                    if (this.head.compareAndSet(curHead, first)) {
+                        first.item = null;
+                        return item;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A null item in the first node means it has just been removed by a
+     * concurrent "poll", which has already swung the head, so we retry.
+     */
+    public E peek() {
+        while (true) {
+            final LinkedQueue.Node<E> first = this.head.get().next.get();
+            if (first == null) {
+                return null;
+            }
+            final E item = first.item;
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.peek() == null;
+    }
+
+    /**
+     * Returns the number of elements by traversing the list.
+     *
+     * The result is only an estimate if the queue is modified during the
+     * traversal, and the traversal takes time linear in the queue length.
+     * There is deliberately no element counter; it would be another atomic
+     * variable contended by both producers and consumers.
+     */
+    public int size() {
+        int count = 0;
+        for (LinkedQueue.Node<E> n = this.head.get().next.get();
+             n != null && count < Integer.MAX_VALUE;
+             n = n.next.get()) {
+            if (n.item != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes at most "maxElements" elements and adds them to the given
+     * collection. Each element is removed with its own "poll", so the
+     * transfer is not atomic, but it never blocks.
+     *
+     * An element can only be added to the collection once it has been
+     * removed, since another thread could remove it between a "peek" and the
+     * "poll". If the collection rejects it by throwing, the element is put
+     * back, at the tail: a nonblocking queue cannot insert at the head.
+     */
+    public int drainTo(final Collection<? super E> c, final int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        int n = 0;
+        E item;
+        while (n < maxElements && (item = this.poll()) != null) {
+            try {
+                c.add(item);
+            } catch (final RuntimeException | Error e) {
+                this.put(item);
+                throw e;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    public int drainTo(final Collection<? super E> c) {
+        return this.drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Weakly consistent iterator: it never throws ConcurrentModificationException,
+     * reflects some but not necessarily all modifications made after it was created,
+     * and does not support removal.
+     */
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private LinkedQueue.Node<E> nextNode = LinkedQueue.this.head.get();
+            private E nextItem;
+
+            @Override
+            public boolean hasNext() {
+                while (this.nextItem == null && this.nextNode != null) {
+                    this.nextNode = this.nextNode.next.get();
+                    if (this.nextNode != null) {
+                        this.nextItem = this.nextNode.item;
+                    }
+                }
+                return this.nextItem != null;
+            }
+
+            @Override
+            public E next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final E item = this.nextItem;
+                this.nextItem = null;
+                return item;
+            }
+        };
+    }
 }
@@ -0,0 +1,199 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import net.jcip.annotations.ThreadSafe;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, multi-consumer array queue without locks
+ *
+ * {@link SemaphoreBoundedBuffer} pays for two semaphore operations and one
+ * monitor acquisition for every element. MpmcBoundedBuffer (after Dmitry
+ * Vyukov's bounded MPMC queue) replaces all of that with one CAS per
+ * operation.
+ *
+ * Producers claim a position by CAS on the "tail" counter and consumers by
+ * CAS on the "head" counter. Each slot of the array carries a sequence
+ * number that tells whether the slot is ready for the producer or for the
+ * consumer of a given position:
+ *
+ *  - sequence == position: the slot is free for the producer of "position"
+ *  - sequence == position + 1: the slot holds the element for the consumer
+ *    of "position"
+ *
+ * After writing or clearing the slot, the thread publishes it by advancing
+ * the slot's sequence, to position + 1 (for the consumer) or to
+ * position + capacity (for the producer in the next lap around the array).
+ *
+ * The capacity is rounded up to a power of two, and to at least 2, because
+ * with a single slot the two sequence states of consecutive positions could
+ * not be told apart.
+ *
+ * <NOTE_false_sharing>
+ *
+ *     "head" and "tail" are written by different threads all the time. If
+ *     they shared a cache line, every CAS on one would invalidate the line
+ *     holding the other on all other cores (false sharing). The fields are
+ *     therefore separated by padding fields declared in a chain of
+ *     superclasses, since the JVM lays out superclass fields first and
+ *     preserves that order.
+ *
+ * </NOTE_false_sharing>
+ *
+ * The blocking "put" and "take" retry "offer" and "poll" according to a
+ * {@link WaitStrategy} (by default spin, then yield); since there is no lock
+ * to wait on, they park for PARK_NANOS between retries once the strategy
+ * gives up.
+ */
+@ThreadSafe
+public class MpmcBoundedBuffer <E> extends MpmcBoundedBufferPad2 {
+    private static final long PARK_NANOS = 1000L;
+    private static final AtomicLongFieldUpdater<MpmcBoundedBufferTail> TAIL =
+            AtomicLongFieldUpdater.newUpdater(MpmcBoundedBufferTail.class, "tail");
+    private static final AtomicLongFieldUpdater<MpmcBoundedBufferHead> HEAD =
+            AtomicLongFieldUpdater.newUpdater(MpmcBoundedBufferHead.class, "head");
+
+    private final int mask;
+    private final E[] items;
+    private final AtomicLongArray sequences;
+    private final WaitStrategy waitStrategy;
+
+    public MpmcBoundedBuffer(final int capacity) {
+        this(capacity, WaitStrategy.spinThenPark(100, 100));
+    }
+
+    public MpmcBoundedBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int size = Math.max(2, roundToPowerOfTwo(capacity));
+        this.mask = size - 1;
+        this.items = (E[]) new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    public int capacity() {
+        return this.items.length;
+    }
+
+    public int size() {
+        final long size = this.tail - this.head;
+        return (int) Math.max(0, Math.min(size, this.items.length));
+    }
+
+    public boolean isEmpty() {
+        return this.tail == this.head;
+    }
+
+    public boolean isFull() {
+        return this.size() == this.items.length;
+    }
+
+    public boolean offer(final E x) {
+        if (x == null) {
+            throw new NullPointerException();
+        }
+        long pos = this.tail;
+        int index;
+        while (true) {
+            index = (int) pos & this.mask;
+            final long diff = this.sequences.get(index) - pos;
+            if (diff == 0) {
+                if (TAIL.compareAndSet(this, pos, pos + 1)) {
+                    break;
+                }
+                pos = this.tail;
+            } else if (diff < 0) {
+                // The consumer of the previous lap has not freed the slot: full
+                return false;
+            } else {
+                // Another producer has already claimed this position
+                pos = this.tail;
+            }
+        }
+        this.items[index] = x;
+        this.sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    public E poll() {
+        long pos = this.head;
+        int index;
+        while (true) {
+            index = (int) pos & this.mask;
+            final long diff = this.sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (HEAD.compareAndSet(this, pos, pos + 1)) {
+                    break;
+                }
+                pos = this.head;
+            } else if (diff < 0) {
+                // The producer of this position has not published yet: empty
+                return null;
+            } else {
+                // Another consumer has already claimed this position
+                pos = this.head;
+            }
+        }
+        final E x = this.items[index];
+        this.items[index] = null;
+        this.sequences.lazySet(index, pos + this.mask + 1);
+        return x;
+    }
+
+    public void put(final E x) throws InterruptedException {
+        int attempts = 0;
+        while (!this.offer(x)) {
+            this.backoff(attempts++);
+        }
+    }
+
+    public E take() throws InterruptedException {
+        int attempts = 0;
+        E x;
+        while ((x = this.poll()) == null) {
+            this.backoff(attempts++);
+        }
+        return x;
+    }
+
+    private void backoff(final int attempts) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (!this.waitStrategy.idle(attempts)) {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private static int roundToPowerOfTwo(final int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+}
+
+abstract class MpmcBoundedBufferPad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpmcBoundedBufferTail extends MpmcBoundedBufferPad0 {
+    volatile long tail;
+}
+
+abstract class MpmcBoundedBufferPad1 extends MpmcBoundedBufferTail {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class MpmcBoundedBufferHead extends MpmcBoundedBufferPad1 {
+    volatile long head;
+}
+
+abstract class MpmcBoundedBufferPad2 extends MpmcBoundedBufferHead {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
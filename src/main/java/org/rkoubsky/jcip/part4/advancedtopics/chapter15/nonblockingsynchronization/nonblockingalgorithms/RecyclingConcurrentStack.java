@@ -0,0 +1,251 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicStampedReference;
+
+/**
+ * Treiber stack with node recycling
+ *
+ * {@link ConcurrentStack} allocates a new Node for every "push" and leaves
+ * the popped node to the garbage collector. RecyclingConcurrentStack keeps
+ * popped nodes in a per-thread free list and reuses them for later pushes,
+ * so once every thread has warmed up its free list, "push" and "pop"
+ * allocate nothing.
+ *
+ * <NOTE_aba_problem>
+ *
+ *     Reusing nodes makes the stack vulnerable to the ABA problem: a thread
+ *     reads node A at the top and A.next, gets delayed, and meanwhile A is
+ *     popped, recycled and pushed again. The CAS on top still sees A and
+ *     succeeds, installing a stale "next".
+ *
+ *     The garbage collector prevents this in ConcurrentStack, because a node
+ *     cannot be reused while some thread still holds a reference to it. Here
+ *     the top is a versioned reference: every successful CAS increments the
+ *     version, so a CAS based on a stale read fails even if the same node is
+ *     at the top again.
+ *
+ *     {@link AtomicStampedReference} would give the same guarantee, but it
+ *     allocates a new reference-stamp pair on every update. Instead, nodes
+ *     are registered in an array and the top is a single AtomicLong holding
+ *     the node index in the low 32 bits and the version in the high 32 bits.
+ *     (The version wraps around after 2^32 updates; a thread would have to
+ *     stall for that many operations between its read and its CAS.)
+ *
+ * </NOTE_aba_problem>
+ *
+ * Nodes popped by a thread go to its own free list; when that list grows
+ * beyond LOCAL_FREE_MAX, nodes spill to a shared free stack (versioned the
+ * same way), so that a thread that only pushes can take nodes released by a
+ * thread that only pops.
+ *
+ * The free list of a thread that has terminated would otherwise hold on to
+ * its nodes for good, and every new thread (e.g. in a cached thread pool)
+ * would allocate nodes of its own. Before allocating a new node, a thread
+ * therefore reclaims the free lists of all terminated threads into the
+ * shared free stack. A terminated thread no longer touches its list, and
+ * observing that it is no longer alive makes all its writes visible.
+ */
+@ThreadSafe
+public class RecyclingConcurrentStack <E> {
+    private static final int NIL = -1;
+    private static final int LOCAL_FREE_MAX = 64;
+
+    private final AtomicLong top = new AtomicLong(pack(NIL, 0));
+    private final AtomicLong sharedFree = new AtomicLong(pack(NIL, 0));
+    private final ThreadLocal<RecyclingConcurrentStack.LocalFreeList> localFree =
+            ThreadLocal.withInitial(this::registerLocalFreeList);
+    @GuardedBy("this")
+    private final List<RecyclingConcurrentStack.LocalFreeList> localFreeLists = new ArrayList<>();
+    /**
+     * Registry of all nodes ever allocated, indexed by Node.index. A new node
+     * is published by writing this volatile field before the node is pushed.
+     */
+    private volatile RecyclingConcurrentStack.Node<E>[] nodes = newNodeArray(16);
+    @GuardedBy("this") private int allocated = 0;
+
+    public void push(final E item) {
+        final RecyclingConcurrentStack.Node<E> newHead = this.obtainNode();
+        newHead.item = item;
+        long oldTop;
+        do {
+            oldTop = this.top.get();
+            newHead.next = indexOf(oldTop);
+        } while (!this.top.compareAndSet(oldTop, pack(newHead.index, versionOf(oldTop) + 1)));
+    }
+
+    /**
+     * The read of "oldHead.next" races with a concurrent recycling of oldHead,
+     * but a racy read only leads to a CAS that fails on the version.
+     */
+    public E pop() {
+        long oldTop;
+        RecyclingConcurrentStack.Node<E> oldHead;
+        do {
+            oldTop = this.top.get();
+            final int index = indexOf(oldTop);
+            if (index == NIL) {
+                return null;
+            }
+            oldHead = this.nodes[index];
+        } while (!this.top.compareAndSet(oldTop, pack(oldHead.next, versionOf(oldTop) + 1)));
+        final E item = oldHead.item;
+        oldHead.item = null;
+        this.release(oldHead);
+        return item;
+    }
+
+    public boolean isEmpty() {
+        return indexOf(this.top.get()) == NIL;
+    }
+
+    /**
+     * Number of nodes allocated so far; it stops growing once the free lists
+     * are warmed up.
+     */
+    public synchronized int allocatedNodes() {
+        return this.allocated;
+    }
+
+    private RecyclingConcurrentStack.Node<E> obtainNode() {
+        final RecyclingConcurrentStack.LocalFreeList local = this.localFree.get();
+        if (local.head != NIL) {
+            final RecyclingConcurrentStack.Node<E> node = this.nodes[local.head];
+            local.head = node.next;
+            local.size--;
+            return node;
+        }
+        long oldFree;
+        RecyclingConcurrentStack.Node<E> node;
+        do {
+            oldFree = this.sharedFree.get();
+            final int index = indexOf(oldFree);
+            if (index == NIL) {
+                return this.allocateNode();
+            }
+            node = this.nodes[index];
+        } while (!this.sharedFree.compareAndSet(oldFree, pack(node.next, versionOf(oldFree) + 1)));
+        return node;
+    }
+
+    private void release(final RecyclingConcurrentStack.Node<E> node) {
+        final RecyclingConcurrentStack.LocalFreeList local = this.localFree.get();
+        if (local.size < LOCAL_FREE_MAX) {
+            node.next = local.head;
+            local.head = node.index;
+            local.size++;
+            return;
+        }
+        this.releaseShared(node);
+    }
+
+    private void releaseShared(final RecyclingConcurrentStack.Node<E> node) {
+        long oldFree;
+        do {
+            oldFree = this.sharedFree.get();
+            node.next = indexOf(oldFree);
+        } while (!this.sharedFree.compareAndSet(oldFree, pack(node.index, versionOf(oldFree) + 1)));
+    }
+
+    private synchronized RecyclingConcurrentStack.LocalFreeList registerLocalFreeList() {
+        final RecyclingConcurrentStack.LocalFreeList local =
+                new RecyclingConcurrentStack.LocalFreeList(Thread.currentThread());
+        this.localFreeLists.add(local);
+        return local;
+    }
+
+    /**
+     * Moves the nodes of terminated threads' free lists to the shared free
+     * stack, except one, which is returned (null if there was none)
+     */
+    @GuardedBy("this")
+    private RecyclingConcurrentStack.Node<E> reclaimTerminatedThreadNodes() {
+        RecyclingConcurrentStack.Node<E> reclaimed = null;
+        final Iterator<RecyclingConcurrentStack.LocalFreeList> it = this.localFreeLists.iterator();
+        while (it.hasNext()) {
+            final RecyclingConcurrentStack.LocalFreeList local = it.next();
+            if (local.owner.isAlive()) {
+                continue;
+            }
+            it.remove();
+            int index = local.head;
+            while (index != NIL) {
+                final RecyclingConcurrentStack.Node<E> node = this.nodes[index];
+                index = node.next;
+                if (reclaimed == null) {
+                    reclaimed = node;
+                } else {
+                    this.releaseShared(node);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    private synchronized RecyclingConcurrentStack.Node<E> allocateNode() {
+        final RecyclingConcurrentStack.Node<E> reclaimed = this.reclaimTerminatedThreadNodes();
+        if (reclaimed != null) {
+            return reclaimed;
+        }
+        RecyclingConcurrentStack.Node<E>[] current = this.nodes;
+        if (this.allocated == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        final RecyclingConcurrentStack.Node<E> node = new RecyclingConcurrentStack.Node<>(this.allocated);
+        current[this.allocated++] = node;
+        this.nodes = current;
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> RecyclingConcurrentStack.Node<E>[] newNodeArray(final int length) {
+        return (RecyclingConcurrentStack.Node<E>[]) new RecyclingConcurrentStack.Node<?>[length];
+    }
+
+    private static long pack(final int index, final int version) {
+        return ((long) version << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private static int indexOf(final long packed) {
+        return (int) packed;
+    }
+
+    private static int versionOf(final long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * The fields are plain: they are written before the node is published by a
+     * CAS on a versioned top, and read after such a CAS succeeds.
+     */
+    private static class Node <E> {
+        final int index;
+        E item;
+        int next = NIL;
+
+        Node(final int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Confined to its thread, so it needs neither versions nor synchronization,
+     * until the thread terminates and the list is reclaimed.
+     */
+    private static class LocalFreeList {
+        final Thread owner;
+        int head = NIL;
+        int size = 0;
+
+        LocalFreeList(final Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Wait-free single-producer, single-consumer ring buffer
+ *
+ * When a queue has exactly one producer thread and one consumer thread,
+ * neither side needs a lock or even a CAS: the producer is the only thread
+ * writing "tail" and the consumer is the only thread writing "head". Every
+ * "offer" and "poll" completes in a bounded number of steps (wait-free),
+ * and unlike {@link LinkedBlockingQueue} no node is allocated per element.
+ *
+ * SpscRingBuffer is thread-safe only under that restriction: calling
+ * "offer"/"put" from more than one thread, or "poll"/"take"/"drain" from
+ * more than one thread, corrupts it.
+ *
+ * <NOTE_lazy_set_publication>
+ *
+ *     The producer writes the element into the slot and only then advances
+ *     "tail". The advance is done with "lazySet" (an ordered store): it
+ *     cannot be reordered with the preceding write of the element, but it
+ *     does not wait for the store buffer to drain the way a volatile write
+ *     does. The consumer publishes a freed slot the same way by advancing
+ *     "head".
+ *
+ * </NOTE_lazy_set_publication>
+ *
+ * <NOTE_cached_indices>
+ *
+ *     Reading the other side's index pulls its cache line over from the
+ *     other core. The producer therefore keeps a private copy of "head"
+ *     and rereads the real one only when the copy says the buffer is full;
+ *     the consumer does the same with "tail". As long as the buffer is
+ *     neither nearly full nor nearly empty, both threads work on their own
+ *     cache lines only (the two groups of fields are padded apart).
+ *
+ * </NOTE_cached_indices>
+ *
+ * The consumer can take many elements at once with "drain", which reads
+ * "tail" once and publishes "head" once per batch instead of per element.
+ *
+ * The blocking "put" and "take" wait according to a {@link WaitStrategy};
+ * since nothing could wake up a blocked thread, they park for PARK_NANOS
+ * between checks once the strategy gives up.
+ */
+@ThreadSafe
+public class SpscRingBuffer <E> extends SpscRingBufferPad2 {
+    private static final AtomicLongFieldUpdater<SpscRingBufferProducerFields> TAIL =
+            AtomicLongFieldUpdater.newUpdater(SpscRingBufferProducerFields.class, "tail");
+    private static final AtomicLongFieldUpdater<SpscRingBufferConsumerFields> HEAD =
+            AtomicLongFieldUpdater.newUpdater(SpscRingBufferConsumerFields.class, "head");
+    private static final long PARK_NANOS = 50000L;
+
+    private final int mask;
+    private final E[] items;
+    private final WaitStrategy waitStrategy;
+
+    public SpscRingBuffer(final int capacity) {
+        this(capacity, WaitStrategy.spinThenYield(0));
+    }
+
+    public SpscRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int size = 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+        this.mask = size - 1;
+        this.items = (E[]) new Object[size];
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return this.items.length;
+    }
+
+    public boolean isEmpty() {
+        return this.head == this.tail;
+    }
+
+    /**
+     * Producer side only.
+     */
+    public boolean offer(final E x) {
+        if (x == null) {
+            throw new NullPointerException();
+        }
+        final long t = this.tail;
+        if (t - this.headCache >= this.items.length) {
+            this.headCache = this.head;
+            if (t - this.headCache >= this.items.length) {
+                return false;
+            }
+        }
+        this.items[(int) t & this.mask] = x;
+        TAIL.lazySet(this, t + 1);
+        return true;
+    }
+
+    /**
+     * Producer side only.
+     */
+    public void put(final E x) throws InterruptedException {
+        int attempts = 0;
+        while (!this.offer(x)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (!this.waitStrategy.idle(attempts++)) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Consumer side only.
+     */
+    public E poll() {
+        final long h = this.head;
+        if (h >= this.tailCache) {
+            this.tailCache = this.tail;
+            if (h >= this.tailCache) {
+                return null;
+            }
+        }
+        final int index = (int) h & this.mask;
+        final E x = this.items[index];
+        this.items[index] = null;
+        HEAD.lazySet(this, h + 1);
+        return x;
+    }
+
+    /**
+     * Consumer side only.
+     */
+    public E take() throws InterruptedException {
+        int attempts = 0;
+        E x;
+        while ((x = this.poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (!this.waitStrategy.idle(attempts++)) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Consumer side only. Passes at most "limit" elements to the handler and
+     * returns how many it passed; zero means the buffer was empty.
+     */
+    public int drain(final Consumer<? super E> handler, final int limit) {
+        final long h = this.head;
+        if (h >= this.tailCache) {
+            this.tailCache = this.tail;
+        }
+        final int n = (int) Math.min(this.tailCache - h, limit);
+        int consumed = 0;
+        try {
+            while (consumed < n) {
+                final int index = (int) (h + consumed) & this.mask;
+                final E x = this.items[index];
+                this.items[index] = null;
+                consumed++;
+                handler.accept(x);
+            }
+        } finally {
+            // If the handler throws, the elements passed to it so far are consumed
+            if (consumed > 0) {
+                HEAD.lazySet(this, h + consumed);
+            }
+        }
+        return n;
+    }
+}
+
+abstract class SpscRingBufferPad0 {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SpscRingBufferProducerFields extends SpscRingBufferPad0 {
+    volatile long tail;
+    long headCache;
+}
+
+abstract class SpscRingBufferPad1 extends SpscRingBufferProducerFields {
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class SpscRingBufferConsumerFields extends SpscRingBufferPad1 {
+    volatile long head;
+    long tailCache;
+}
+
+abstract class SpscRingBufferPad2 extends SpscRingBufferConsumerFields {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+}
@@ -0,0 +1,116 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for a queue to change
+ *
+ * A thread that finds a queue empty (or full) can block until another
+ * thread wakes it up, but parking and unparking costs a context switch on
+ * both sides, often tens of microseconds until the waiting thread runs
+ * again. If the next element arrives sooner than that, it is cheaper to
+ * keep checking. The wait strategy decides how to wait between two checks,
+ * trading handoff latency against CPU usage:
+ *
+ *  - busySpin: checks again immediately; lowest latency, but occupies a
+ *    whole core for as long as it waits
+ *  - spinThenYield: spins for a while, then lets other runnable threads use
+ *    the core between checks
+ *  - spinThenPark: spins and yields for a configurable budget of attempts,
+ *    then gives up so that the caller blocks until it is woken up
+ *  - timedPark: sleeps for a fixed period between checks; almost no CPU,
+ *    but adds up to that period to every handoff
+ *
+ * "idle" is called after the "attempts"-th unsuccessful check (counting from
+ * zero) and returns whether the caller should check again. When it returns
+ * false, the caller blocks: structures with a way to wake a blocked thread
+ * (semaphores, wait queues) park until signalled, and the nonblocking ring
+ * buffers, which have none, fall back to short timed parks.
+ *
+ * The strategies are stateless, so one instance can be shared by any number
+ * of threads and queues.
+ */
+public interface WaitStrategy {
+    /**
+     * Never waits without being woken up: the caller blocks right away.
+     */
+    WaitStrategy BLOCK = new WaitStrategy() {
+        @Override
+        public boolean idle(final int attempts) {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "block";
+        }
+    };
+
+    boolean idle(int attempts);
+
+    static WaitStrategy busySpin() {
+        return new WaitStrategy() {
+            @Override
+            public boolean idle(final int attempts) {
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "busySpin";
+            }
+        };
+    }
+
+    static WaitStrategy spinThenYield(final int spins) {
+        return new WaitStrategy() {
+            @Override
+            public boolean idle(final int attempts) {
+                if (attempts >= spins) {
+                    Thread.yield();
+                }
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "spinThenYield(" + spins + ")";
+            }
+        };
+    }
+
+    static WaitStrategy spinThenPark(final int spins, final int yields) {
+        return new WaitStrategy() {
+            @Override
+            public boolean idle(final int attempts) {
+                if (attempts < spins) {
+                    return true;
+                } else if (attempts < spins + yields) {
+                    Thread.yield();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return "spinThenPark(" + spins + ", " + yields + ")";
+            }
+        };
+    }
+
+    static WaitStrategy timedPark(final long nanos) {
+        return new WaitStrategy() {
+            @Override
+            public boolean idle(final int attempts) {
+                LockSupport.parkNanos(nanos);
+                return true;
+            }
+
+            @Override
+            public String toString() {
+                return "timedPark(" + nanos + "ns)";
+            }
+        };
+    }
+}
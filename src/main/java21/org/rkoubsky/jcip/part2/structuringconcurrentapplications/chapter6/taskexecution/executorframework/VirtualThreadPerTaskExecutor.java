@@ -0,0 +1,25 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.executorframework;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that starts a new virtual thread for each task
+ *
+ * ThreadPerTaskExecutor is limited by what a platform thread costs: an OS
+ * thread with its own stack, so a few thousand of them exhaust memory or
+ * the scheduler. A virtual thread (Java 21) is scheduled by the JVM on a
+ * small pool of carrier threads, and when it blocks in I/O or on a lock it
+ * is unmounted and its carrier runs another one. Creating one per task is
+ * then as cheap as submitting a task to a pool, and the thread-per-task
+ * model no longer needs a bound for the sake of the threads.
+ *
+ * The bound may still be needed for the sake of what the tasks use (memory,
+ * connections to a database), which is where a Semaphore
+ * (see BoundedExecutor) takes over from the pool size.
+ */
+public class VirtualThreadPerTaskExecutor implements Executor {
+    @Override
+    public void execute(final Runnable r) {
+        Thread.ofVirtual().start(r);
+    }
+}
@@ -0,0 +1,44 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.executorframework;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Web server using a virtual thread per request
+ *
+ * TaskExecutionWebServer caps the number of requests served at once at
+ * NTHREADS, because every request holds a platform thread for as long as
+ * it blocks. ThreadPerTaskWebServer has no cap and falls over instead.
+ * With virtual threads, a request blocked on its connection costs a few
+ * hundred bytes of heap rather than a thread, so the server can keep the
+ * simple thread-per-request structure and still serve tens of thousands
+ * of slow connections at once.
+ *
+ * Only the Executor changes: the server code is that of
+ * TaskExecutionWebServer, which is the point of decoupling task submission
+ * from task execution.
+ */
+public class VirtualThreadWebServer {
+    private static final ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor();
+
+    public static void main(final String[] args) throws IOException {
+        final ServerSocket socket = new ServerSocket(80);
+        while (true) {
+            final Socket connection = socket.accept();
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    handleRequest(connection);
+                }
+            };
+            exec.execute(task);
+        }
+    }
+
+    private static void handleRequest(final Socket connection) {
+        // request-handling logic here
+    }
+}
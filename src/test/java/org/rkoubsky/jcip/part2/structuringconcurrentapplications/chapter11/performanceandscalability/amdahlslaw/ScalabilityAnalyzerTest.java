@@ -0,0 +1,42 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.amdahlslaw;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class ScalabilityAnalyzerTest {
+
+    private static double[] throughputOf(final int maxThreads, final double sigma, final double kappa) {
+        final double[] throughput = new double[maxThreads + 1];
+        for (int n = 1; n <= maxThreads; n++) {
+            throughput[n] = 1000.0 * n / (1 + sigma * (n - 1) + kappa * n * (n - 1));
+        }
+        return throughput;
+    }
+
+    @Test
+    public void testFitRecoversUslCoefficients() {
+        final ScalabilityAnalyzer.Result result = new ScalabilityAnalyzer.Result(throughputOf(16, 0.05, 0.002));
+        assertThat(result.getUslSigma()).isCloseTo(0.05, within(1e-9));
+        assertThat(result.getUslKappa()).isCloseTo(0.002, within(1e-9));
+        assertThat(result.getPeakThreads()).isCloseTo(Math.sqrt(0.95 / 0.002), within(1e-6));
+        // Past the peak at ~21.8 threads more threads only lower the throughput
+        assertThat(result.recommendThreads(64, 0)).isEqualTo(22);
+    }
+
+    @Test
+    public void testAmdahlWorkloadHasNoCoherencyCost() {
+        final ScalabilityAnalyzer.Result result = new ScalabilityAnalyzer.Result(throughputOf(8, 0.1, 0));
+        assertThat(result.getAmdahlSigma()).isCloseTo(0.1, within(1e-9));
+        assertThat(result.getUslKappa()).isCloseTo(0, within(1e-9));
+        assertThat(result.predictAmdahl(8)).isCloseTo(result.getSpeedup(8), within(1e-9));
+    }
+
+    @Test
+    public void testRecommendationStopsWhenAThreadAddsTooLittle() {
+        final ScalabilityAnalyzer.Result result = new ScalabilityAnalyzer.Result(throughputOf(8, 0.5, 0));
+        // speedups: 1, 1.33, 1.5, 1.6, 1.67, ... ; the 4th thread adds only 0.1
+        assertThat(result.recommendThreads(8, 0.15)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,115 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.amdahlslaw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared work queue versus work stealing on fine-grained tasks
+ *
+ * Every task does a few hundred nanoseconds of computation and submits two
+ * child tasks, down to DEPTH levels, so the cost of handing tasks over
+ * dominates. With WorkerThreads all tasks go through one LinkedBlockingQueue;
+ * with WorkStealingPool the children go to the submitting worker's deque.
+ * Completion is counted in a LongAdder, which does not add a shared
+ * contention point of its own.
+ */
+public class WorkStealingBenchmark {
+    private static final int DEPTH = 18;
+    private static final long TASKS = (1L << (DEPTH + 1)) - 1;
+    private static final int WORK = 50;
+
+    private interface Pool {
+        Executor executor();
+
+        void shutdown() throws InterruptedException;
+    }
+
+    private static Pool sharedQueue(final int nThreads) {
+        final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        final List<WorkerThread> workers = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final WorkerThread worker = new WorkerThread(queue);
+            workers.add(worker);
+            worker.start();
+        }
+        return new Pool() {
+            @Override
+            public Executor executor() {
+                return queue::add;
+            }
+
+            @Override
+            public void shutdown() throws InterruptedException {
+                for (final WorkerThread worker : workers) {
+                    worker.interrupt();
+                    worker.join();
+                }
+            }
+        };
+    }
+
+    private static Pool workStealing(final int nThreads) {
+        final WorkStealingPool pool = new WorkStealingPool(nThreads);
+        return new Pool() {
+            @Override
+            public Executor executor() {
+                return pool;
+            }
+
+            @Override
+            public void shutdown() throws InterruptedException {
+                pool.shutdown();
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        };
+    }
+
+    private static void spawn(final Executor executor, final int depth, final LongAdder done) {
+        executor.execute(() -> {
+            if (depth > 0) {
+                spawn(executor, depth - 1, done);
+                spawn(executor, depth - 1, done);
+            }
+            long x = depth + 1;
+            for (int i = 0; i < WORK; i++) {
+                x ^= x << 13;
+                x ^= x >>> 7;
+                x ^= x << 17;
+            }
+            if (x == 0) {
+                System.out.print(""); // keeps the computation from being eliminated
+            }
+            done.increment();
+        });
+    }
+
+    /**
+     * Tasks per microsecond
+     */
+    private static double run(final Pool pool) throws InterruptedException {
+        final LongAdder done = new LongAdder();
+        final long start = System.nanoTime();
+        spawn(pool.executor(), DEPTH, done);
+        while (done.sum() < TASKS) {
+            Thread.sleep(1);
+        }
+        final long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        return TASKS * 1000.0 / elapsed;
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Threads\tshared queue (tasks/us)\twork stealing (tasks/us)");
+        for (int n = 1; n <= maxThreads; n *= 2) {
+            run(sharedQueue(n)); // warmup
+            run(workStealing(n));
+            System.out.printf("%d\t%.2f\t%.2f%n", n, run(sharedQueue(n)), run(workStealing(n)));
+        }
+    }
+}
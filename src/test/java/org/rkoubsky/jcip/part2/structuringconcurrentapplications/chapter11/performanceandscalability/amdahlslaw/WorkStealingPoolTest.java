@@ -0,0 +1,116 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter11.performanceandscalability.amdahlslaw;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WorkStealingPoolTest {
+
+    /**
+     * Every task of a binary tree of tasks, each spawning its children from
+     * inside the pool, runs exactly once
+     */
+    @Test
+    public void testRecursivelySubmittedTasksRunExactlyOnce() throws InterruptedException {
+        final int depth = 14;
+        final int nTasks = (1 << (depth + 1)) - 1;
+        final WorkStealingPool pool = new WorkStealingPool(4);
+        final AtomicIntegerArray runs = new AtomicIntegerArray(nTasks);
+        final CountDownLatch done = new CountDownLatch(nTasks);
+        pool.execute(new Node(pool, 0, nTasks, runs, done));
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < nTasks; i++) {
+            assertThat(runs.get(i)).isEqualTo(1);
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Tasks submitted while the workers are parked wake them up, and
+     * shutdown lets the queued tasks finish
+     */
+    @Test
+    public void testIdleWorkersWakeUpAndShutdownDrainsTasks() throws InterruptedException {
+        final WorkStealingPool pool = new WorkStealingPool(3);
+        final AtomicInteger counter = new AtomicInteger();
+        for (int round = 0; round < 50; round++) {
+            Thread.sleep(1); // let the workers go idle
+            for (int i = 0; i < 20; i++) {
+                pool.execute(counter::incrementAndGet);
+            }
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(counter.get()).isEqualTo(1000);
+    }
+
+    /**
+     * Submitters keep submitting while the pool is shut down under them;
+     * every task that was not rejected must run, even if it was published
+     * just as the workers were about to exit
+     */
+    @Test(timeout = 60000)
+    public void testTasksAcceptedDuringShutdownAreNotLost() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final WorkStealingPool pool = new WorkStealingPool(2);
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger counter = new AtomicInteger();
+            final Thread[] submitters = new Thread[2];
+            for (int i = 0; i < submitters.length; i++) {
+                submitters[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (true) {
+                                pool.execute(counter::incrementAndGet);
+                                accepted.incrementAndGet();
+                            }
+                        } catch (final RejectedExecutionException expected) {
+                        }
+                    }
+                };
+                submitters[i].start();
+            }
+            Thread.sleep(1);
+            pool.shutdown();
+            for (final Thread submitter : submitters) {
+                submitter.join();
+            }
+            assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(counter.get()).isEqualTo(accepted.get());
+        }
+    }
+
+    private static class Node implements Runnable {
+        private final WorkStealingPool pool;
+        private final int index;
+        private final int nTasks;
+        private final AtomicIntegerArray runs;
+        private final CountDownLatch done;
+
+        Node(final WorkStealingPool pool, final int index, final int nTasks,
+             final AtomicIntegerArray runs, final CountDownLatch done) {
+            this.pool = pool;
+            this.index = index;
+            this.nTasks = nTasks;
+            this.runs = runs;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            for (int child = 2 * this.index + 1; child <= 2 * this.index + 2 && child < this.nTasks; child++) {
+                this.pool.execute(new Node(this.pool, child, this.nTasks, this.runs, this.done));
+            }
+            this.runs.incrementAndGet(this.index);
+            this.done.countDown();
+        }
+    }
+}
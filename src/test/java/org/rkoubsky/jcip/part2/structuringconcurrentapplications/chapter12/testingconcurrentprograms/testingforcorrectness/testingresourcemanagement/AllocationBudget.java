@@ -0,0 +1,79 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingresourcemanagement;
+
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bytes allocated per operation as a tested property
+ *
+ * HotSpot counts the bytes every thread allocates on the heap, and
+ * com.sun.management.ThreadMXBean exposes the counter. Reading it before and
+ * after a large number of operations, all on the calling thread, gives the
+ * average allocation per operation, independent of when or whether the
+ * garbage collector runs.
+ *
+ * "assertAllocatesAtMost" turns that number into a regression test: a data
+ * structure that is meant to work without allocating (e.g. because it
+ * recycles its nodes or keeps its elements in a preallocated array) gets a
+ * budget of 0 bytes per operation, and a change that makes it allocate
+ * again fails the test.
+ *
+ * The operation is first run WARMUP_OPERATIONS times, so that what is
+ * measured is the compiled code; the JIT can remove allocations that do not
+ * escape, so interpreted code may allocate more. The cost of reading the
+ * counter itself is measured and subtracted.
+ *
+ * One-off allocations during the measured run (lazy initialization, a
+ * deoptimization) add up to a fraction of a byte per operation, while
+ * anything allocated by every operation costs at least 16 bytes, so the
+ * budget counts as exceeded only by SLACK_BYTES_PER_OPERATION or more.
+ */
+public final class AllocationBudget {
+    private static final int WARMUP_OPERATIONS = 50000;
+    private static final int OPERATIONS = 100000;
+    private static final double SLACK_BYTES_PER_OPERATION = 1.0;
+    private static final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationBudget() {
+    }
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Total bytes allocated by the calling thread so far
+     */
+    public static long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static double bytesPerOperation(final Operation operation) throws Exception {
+        Assume.assumeTrue("Thread allocation counting not supported",
+                          threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            operation.run();
+        }
+        final long overheadStart = allocatedBytes();
+        final long overhead = allocatedBytes() - overheadStart;
+
+        final long start = allocatedBytes();
+        for (int i = 0; i < OPERATIONS; i++) {
+            operation.run();
+        }
+        final long allocated = allocatedBytes() - start - overhead;
+        return Math.max(0, allocated) / (double) OPERATIONS;
+    }
+
+    public static void assertAllocatesAtMost(final double maxBytesPerOperation, final Operation operation)
+            throws Exception {
+        assertThat(bytesPerOperation(operation))
+                .as("bytes allocated per operation")
+                .isLessThan(maxBytesPerOperation + SLACK_BYTES_PER_OPERATION);
+    }
+}
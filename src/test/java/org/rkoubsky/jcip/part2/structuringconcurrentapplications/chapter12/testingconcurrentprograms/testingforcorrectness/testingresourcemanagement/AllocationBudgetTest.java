@@ -0,0 +1,88 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingresourcemanagement;
+
+import org.junit.Test;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.IntBoundedBuffer;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.atomicvariableclasses.PackedCasNumberRange;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.cas.StripedCounter;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.LinkedQueue;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.MpmcBoundedBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.RecyclingConcurrentStack;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.SpscRingBuffer;
+
+import static org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingresourcemanagement.AllocationBudget.assertAllocatesAtMost;
+
+/**
+ * Allocation budgets of the data structures that are meant not to allocate
+ * per element. The elements are preallocated (small Integers come from the
+ * Integer cache), so any allocation measured is the data structure's own.
+ */
+public class AllocationBudgetTest {
+    private static final Integer ITEM = 42;
+
+    @Test
+    public void testSemaphoreBoundedBufferDoesNotAllocate() throws Exception {
+        final SemaphoreBoundedBuffer<Integer> bb = new SemaphoreBoundedBuffer<>(10);
+        assertAllocatesAtMost(0, () -> {
+            bb.put(ITEM);
+            bb.take();
+        });
+    }
+
+    @Test
+    public void testIntBoundedBufferDoesNotAllocate() throws Exception {
+        final IntBoundedBuffer bb = new IntBoundedBuffer(10);
+        assertAllocatesAtMost(0, () -> {
+            bb.put(ITEM);
+            bb.take();
+        });
+    }
+
+    @Test
+    public void testRingBuffersDoNotAllocate() throws Exception {
+        final MpmcBoundedBuffer<Integer> mpmc = new MpmcBoundedBuffer<>(16);
+        assertAllocatesAtMost(0, () -> {
+            mpmc.offer(ITEM);
+            mpmc.poll();
+        });
+        final SpscRingBuffer<Integer> spsc = new SpscRingBuffer<>(16);
+        assertAllocatesAtMost(0, () -> {
+            spsc.offer(ITEM);
+            spsc.poll();
+        });
+    }
+
+    @Test
+    public void testRecyclingConcurrentStackReusesNodes() throws Exception {
+        final RecyclingConcurrentStack<Integer> stack = new RecyclingConcurrentStack<>();
+        assertAllocatesAtMost(0, () -> {
+            stack.push(ITEM);
+            stack.pop();
+        });
+    }
+
+    /**
+     * LinkedQueue allocates one node per element, plus the AtomicReference
+     * holding the node's "next" link (24 + 16 bytes with compressed oops)
+     */
+    @Test
+    public void testLinkedQueueAllocatesOneNodePerElement() throws Exception {
+        final LinkedQueue<Integer> queue = new LinkedQueue<>();
+        assertAllocatesAtMost(40, () -> {
+            queue.put(ITEM);
+            queue.poll();
+        });
+    }
+
+    @Test
+    public void testCountersAndRangesDoNotAllocate() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        assertAllocatesAtMost(0, counter::increment);
+        final PackedCasNumberRange range = new PackedCasNumberRange();
+        range.setUpper(10);
+        assertAllocatesAtMost(0, () -> {
+            range.setLower(5);
+            range.setLower(0);
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.IntBoundedBuffer;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+
+/**
+ * The buffer under test, as seen by the put/take test programs
+ *
+ * The producers and consumers only put and take ints, so the same test can
+ * run against {@link SemaphoreBoundedBuffer} (BOXED: every put boxes the int
+ * into an Integer) and against {@link IntBoundedBuffer} (PRIMITIVE: no
+ * allocation per element). Comparing the two modes shows how much of the
+ * measured time is allocation rather than the buffer itself.
+ */
+public interface IntBuffer {
+    enum Mode {
+        BOXED, PRIMITIVE;
+
+        public IntBuffer newBuffer(final int capacity) {
+            if (this == BOXED) {
+                final SemaphoreBoundedBuffer<Integer> bb = new SemaphoreBoundedBuffer<>(capacity);
+                return new IntBuffer() {
+                    @Override
+                    public void put(final int x) throws InterruptedException {
+                        bb.put(x);
+                    }
+
+                    @Override
+                    public int take() throws InterruptedException {
+                        return bb.take();
+                    }
+                };
+            }
+            final IntBoundedBuffer bb = new IntBoundedBuffer(capacity);
+            return new IntBuffer() {
+                @Override
+                public void put(final int x) throws InterruptedException {
+                    bb.put(x);
+                }
+
+                @Override
+                public int take() throws InterruptedException {
+                    return bb.take();
+                }
+            };
+        }
+    }
+
+    void put(int x) throws InterruptedException;
+
+    int take() throws InterruptedException;
+}
@@ -3,8 +3,13 @@ package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.test
 import org.assertj.core.api.Assertions;
 import org.junit.After;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.IntBoundedBuffer;
 import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,23 +41,36 @@ import java.util.concurrent.locks.ReentrantLock;
  *  A sample run of PutTakeTest with a version of SemaphoreBoundedBuffer that omits making doInsert
  *  and doExtract synchronized fails quickly (try it out, it really does).
  *
+ *  The test runs against both {@link SemaphoreBoundedBuffer} and the primitive
+ *  {@link IntBoundedBuffer}, see {@link IntBuffer}.
+ *
  */
+@RunWith(Parameterized.class)
 public class PutTakeTest {
-    private static final ExecutorService pool = Executors.newCachedThreadPool();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
     public static final int CAPACITY = 10;
     public static final int NPAIRS = 10;
     public static final int NTRIALS = 100000;
     private CyclicBarrier barrier = new CyclicBarrier(NPAIRS * 2 + 1);;
-    private final SemaphoreBoundedBuffer<Integer> bb = new SemaphoreBoundedBuffer<>(CAPACITY);
+    private final IntBuffer bb;
     private final AtomicInteger putSum = new AtomicInteger(0);
     private final AtomicInteger takeSum = new AtomicInteger(0);
 
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> data() {
+        return Arrays.asList(new Object[][]{{IntBuffer.Mode.BOXED}, {IntBuffer.Mode.PRIMITIVE}});
+    }
+
+    public PutTakeTest(final IntBuffer.Mode mode) {
+        this.bb = mode.newBuffer(CAPACITY);
+    }
+
     @Test
     public void test() {
         try {
             for (int i = 0; i < NPAIRS; i++) {
-                pool.execute(new Producer());
-                pool.execute(new Consumer());
+                this.pool.execute(new Producer());
+                this.pool.execute(new Consumer());
             }
             this.barrier.await(); // cycle 1: wait for all threads to be ready
             this.barrier.await(); // cycle 2: wait for all threads to finish
@@ -72,7 +90,7 @@ public class PutTakeTest {
                 for (int i = NTRIALS; i > 0; --i) {
                     PutTakeTest.this.bb.put(seed);
                     sum += seed;
-                    seed = new XorShift(seed).next();
+                    seed = XorShift.xorShift(seed);
                 }
                 PutTakeTest.this.putSum.getAndAdd(sum);
                 PutTakeTest.this.barrier.await();
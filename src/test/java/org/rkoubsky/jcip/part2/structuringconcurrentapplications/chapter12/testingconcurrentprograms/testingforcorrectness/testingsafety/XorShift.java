@@ -18,6 +18,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * </NOTE_random_number_generator_concurrency_bottleneck>
  *
  * XorShift function is among the cheapest medium-quality random number functions.
+ *
+ * A test that generates one number per element should use the static
+ * "xorShift" function rather than creating a new XorShift for each number;
+ * otherwise the allocation shows up in the measurement.
  */
 public class XorShift {
     static final AtomicInteger seq = new AtomicInteger(8862213);
@@ -32,9 +36,14 @@ public class XorShift {
     }
 
     public int next() {
-        this.x ^= this.x << 6;
-        this.x ^= this.x >>> 21;
-        this.x ^= (this.x << 7);
+        this.x = xorShift(this.x);
         return this.x;
     }
+
+    public static int xorShift(int y) {
+        y ^= y << 6;
+        y ^= y >>> 21;
+        y ^= (y << 7);
+        return y;
+    }
 }
@@ -3,6 +3,9 @@ package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.test
 import org.junit.Test;
 import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
@@ -29,6 +32,67 @@ public class SemaphoreBoundedBufferTest {
         assertThat(buffer.isFull()).isTrue();
     }
 
+    @Test
+    public void testBatchesWrapAroundInFifoOrder() throws Exception {
+        final SemaphoreBoundedBuffer<Integer> buffer = new SemaphoreBoundedBuffer<>(10);
+        buffer.putAll(new Integer[]{0, 1, 2, 3, 4, 5, 6});
+        assertThat(buffer.takeAtLeast(5, 5)).containsExactly(0, 1, 2, 3, 4);
+
+        buffer.putAll(new Integer[]{7, 8, 9, 10, 11, 12, 13});
+        assertThat(buffer.isFull()).isFalse();
+        final List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained, 4)).isEqualTo(4);
+        assertThat(drained).containsExactly(5, 6, 7, 8);
+        assertThat(buffer.takeAtLeast(1, 100)).containsExactly(9, 10, 11, 12, 13);
+        assertThat(buffer.isEmpty()).isTrue();
+        assertThat(buffer.drainTo(drained, 4)).isEqualTo(0);
+    }
+
+    @Test
+    public void testDrainToNullTakesNothing() throws Exception {
+        final SemaphoreBoundedBuffer<Integer> buffer = new SemaphoreBoundedBuffer<>(10);
+        buffer.putAll(new Integer[]{0, 1, 2});
+        try {
+            buffer.drainTo(null, 3);
+            fail();
+        } catch (final NullPointerException expected) {
+        }
+        assertThat(buffer.takeAtLeast(3, 3)).containsExactly(0, 1, 2);
+    }
+
+    /**
+     * The collection accepts two elements and then throws; the rest go back
+     * to the head of the buffer, wrapped around the end of the array, ahead
+     * of the elements put after them
+     */
+    @Test
+    public void testDrainToRestoresElementsTheCollectionRejects() throws Exception {
+        final SemaphoreBoundedBuffer<Integer> buffer = new SemaphoreBoundedBuffer<>(5);
+        buffer.put(-1);
+        assertThat(buffer.take()).isEqualTo(-1);
+        buffer.putAll(new Integer[]{0, 1, 2, 3, 4});
+        final List<Integer> drained = new ArrayList<Integer>() {
+            @Override
+            public boolean add(final Integer x) {
+                if (this.size() == 2) {
+                    throw new IllegalStateException("full");
+                }
+                return super.add(x);
+            }
+        };
+        try {
+            buffer.drainTo(drained, 5);
+            fail();
+        } catch (final IllegalStateException expected) {
+        }
+        assertThat(drained).containsExactly(0, 1);
+        assertThat(buffer.isFull()).isFalse();
+        buffer.putAll(new Integer[]{5, 6});
+        assertThat(buffer.isFull()).isTrue();
+        assertThat(buffer.takeAtLeast(5, 5)).containsExactly(2, 3, 4, 5, 6);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
     /**
      * This methods shows an approach to testing blocking operations. It creates a "taker"
      * thread that attempts to "take" an element from an empty buffer. If "take" succeeds,
@@ -0,0 +1,72 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000000; v++) {
+            histogram.record(v);
+        }
+        assertThat(histogram.getCount()).isEqualTo(1000000);
+        assertThat(histogram.getMax()).isEqualTo(1000000);
+        assertThat(histogram.getMean()).isCloseTo(500000.5, within(0.001));
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(500000L, 500000L + 500000L / 32);
+        assertThat(histogram.getValueAtPercentile(99.9)).isBetween(999000L, 1000000L);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1000000);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 0; v < 32; v++) {
+            histogram.record(v);
+        }
+        assertThat(histogram.getValueAtPercentile(50)).isEqualTo(15);
+        assertThat(histogram.getValueAtPercentile(0)).isEqualTo(0);
+    }
+
+    @Test
+    public void testAddMergesCountsAndMax() {
+        final LatencyHistogram first = new LatencyHistogram();
+        final LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(Long.MAX_VALUE);
+        first.add(second);
+        assertThat(first.getCount()).isEqualTo(2);
+        assertThat(first.getMax()).isEqualTo(Long.MAX_VALUE);
+        assertThat(first.getValueAtPercentile(50)).isEqualTo(10);
+        assertThat(first.getValueAtPercentile(100)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testAtomicSnapshotMatchesSingleThreadedHistogram() throws InterruptedException {
+        final AtomicLatencyHistogram atomic = new AtomicLatencyHistogram();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (long v = 1; v <= 100000; v++) {
+                    atomic.record(v);
+                }
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final LatencyHistogram expected = new LatencyHistogram();
+        for (long v = 1; v <= 100000; v++) {
+            expected.record(v);
+        }
+        final LatencyHistogram snapshot = atomic.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(4 * expected.getCount());
+        assertThat(snapshot.getMax()).isEqualTo(expected.getMax());
+        assertThat(snapshot.getMean()).isCloseTo(expected.getMean(), within(0.001));
+        assertThat(snapshot.getValueAtPercentile(99)).isEqualTo(expected.getValueAtPercentile(99));
+    }
+}
@@ -1,7 +1,7 @@
 package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
 
 import junit.framework.TestCase;
-import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.IntBuffer;
 import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.XorShift;
 
 import java.util.concurrent.CyclicBarrier;
@@ -17,6 +17,15 @@ import static org.assertj.core.api.Assertions.assertThat;
  * Rather than attempting  to measure the time for a single operation,
  * we get a more accurate measure by timing the entire run and dividing
  * by the number of operations to get a per-operation time.
+ *
+ * Each configuration is measured in both {@link IntBuffer.Mode}s: BOXED
+ * (SemaphoreBoundedBuffer<Integer>) and PRIMITIVE (IntBoundedBuffer). The
+ * difference between them is the cost of boxing, not of the buffer.
+ *
+ * The harness has no control over warmup, JIT compilation carried over from
+ * one configuration to the next, or dead-code elimination. For numbers that
+ * can be compared, use QueuePutTakeBenchmark in src/jmh (the "jmh" Maven
+ * profile), which also reports put-to-take latency percentiles.
  */
 public class TimedPutTakeTest extends TestCase {
     private static final ExecutorService pool = Executors.newCachedThreadPool();
@@ -26,10 +35,10 @@ public class TimedPutTakeTest extends TestCase {
     private CyclicBarrier barrier;
     private final AtomicInteger putSum = new AtomicInteger(0);
     private final AtomicInteger takeSum = new AtomicInteger(0);
-    private final SemaphoreBoundedBuffer<Integer> bb;
+    private final IntBuffer bb;
 
-    public TimedPutTakeTest(final int capacity, final int npairs, final int ntrials) {
-        this.bb = new SemaphoreBoundedBuffer<>(capacity);
+    public TimedPutTakeTest(final IntBuffer.Mode mode, final int capacity, final int npairs, final int ntrials) {
+        this.bb = mode.newBuffer(capacity);
         this.nTrials = ntrials;
         this.nPairs = npairs;
         this.barrier = new CyclicBarrier(npairs * 2 + 1, this.timer);
@@ -57,14 +66,16 @@ public class TimedPutTakeTest extends TestCase {
         for (int cap = 1; cap <= 1000; cap *= 10) {
             System.out.println("Capacity: " + cap);
             for (int pairs = 1; pairs <= 128; pairs *= 2) {
-                final TimedPutTakeTest t = new TimedPutTakeTest(cap, pairs, tpt);
-                System.out.print("Pairs: " + pairs + "\t");
-                t.test();
-                System.out.print("\t");
-                Thread.sleep(1000);
-                t.test();
-                System.out.println();
-                Thread.sleep(1000);
+                for (final IntBuffer.Mode mode : IntBuffer.Mode.values()) {
+                    final TimedPutTakeTest t = new TimedPutTakeTest(mode, cap, pairs, tpt);
+                    System.out.print("Pairs: " + pairs + "\t" + mode + "\t");
+                    t.test();
+                    System.out.print("\t");
+                    Thread.sleep(1000);
+                    t.test();
+                    System.out.println();
+                    Thread.sleep(1000);
+                }
             }
         }
         TimedPutTakeTest.pool.shutdown();
@@ -80,7 +91,7 @@ public class TimedPutTakeTest extends TestCase {
                 for (int i = TimedPutTakeTest.this.nTrials; i > 0; --i) {
                     TimedPutTakeTest.this.bb.put(seed);
                     sum += seed;
-                    seed = new XorShift(seed).next();
+                    seed = XorShift.xorShift(seed);
                 }
                 TimedPutTakeTest.this.putSum.getAndAdd(sum);
                 TimedPutTakeTest.this.barrier.await();
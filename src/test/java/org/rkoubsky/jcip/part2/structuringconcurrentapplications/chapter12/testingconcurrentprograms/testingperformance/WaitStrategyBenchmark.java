@@ -0,0 +1,88 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.SemaphoreBoundedBuffer;
+import org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms.WaitStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Handoff latency versus consumer CPU usage for each WaitStrategy
+ *
+ * A producer puts a timestamp into a SemaphoreBoundedBuffer every
+ * INTERVAL_NANOS, so the consumer spends most of its time waiting in "take".
+ * For each strategy the consumer records the mean and maximum time from
+ * "put" to the return of "take", and the fraction of the run it spent on the
+ * CPU. Plotting one against the other gives the tradeoff curve: busy
+ * spinning buys the lowest latency with a whole core, blocking right away
+ * costs almost no CPU but pays the wakeup latency on every handoff.
+ */
+public class WaitStrategyBenchmark {
+    private static final int HANDOFFS = 20000;
+    private static final long INTERVAL_NANOS = 50000L;
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final WaitStrategy waitStrategy;
+    private long totalLatency;
+    private long maxLatency;
+    private long cpuTime;
+    private long wallTime;
+
+    public WaitStrategyBenchmark(final WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    public void run() throws InterruptedException {
+        final SemaphoreBoundedBuffer<Long> bb = new SemaphoreBoundedBuffer<>(1, this.waitStrategy);
+        final Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                final long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+                final long wallStart = System.nanoTime();
+                try {
+                    for (int i = 0; i < HANDOFFS; i++) {
+                        final long sent = bb.take();
+                        final long latency = System.nanoTime() - sent;
+                        WaitStrategyBenchmark.this.totalLatency += latency;
+                        WaitStrategyBenchmark.this.maxLatency = Math.max(WaitStrategyBenchmark.this.maxLatency, latency);
+                    }
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                WaitStrategyBenchmark.this.cpuTime = threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+                WaitStrategyBenchmark.this.wallTime = System.nanoTime() - wallStart;
+            }
+        };
+        consumer.start();
+        for (int i = 0; i < HANDOFFS; i++) {
+            LockSupport.parkNanos(INTERVAL_NANOS);
+            bb.put(System.nanoTime());
+        }
+        // join makes the consumer's results visible to this thread
+        consumer.join();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final WaitStrategy[] strategies = {
+                WaitStrategy.BLOCK,
+                WaitStrategy.busySpin(),
+                WaitStrategy.spinThenYield(100),
+                WaitStrategy.spinThenPark(1000, 0),
+                WaitStrategy.spinThenPark(100, 1000),
+                WaitStrategy.timedPark(10000L),
+                WaitStrategy.timedPark(100000L)
+        };
+        System.out.println("Strategy\tmean latency (us)\tmax latency (us)\tconsumer CPU (%)");
+        for (final WaitStrategy strategy : strategies) {
+            new WaitStrategyBenchmark(strategy).run(); // warmup
+            final WaitStrategyBenchmark b = new WaitStrategyBenchmark(strategy);
+            b.run();
+            System.out.printf("%s\t%.1f\t%.1f\t%.0f%n",
+                    strategy,
+                    b.totalLatency / (HANDOFFS * 1000.0),
+                    b.maxLatency / 1000.0,
+                    100.0 * b.cpuTime / b.wallTime);
+        }
+    }
+}
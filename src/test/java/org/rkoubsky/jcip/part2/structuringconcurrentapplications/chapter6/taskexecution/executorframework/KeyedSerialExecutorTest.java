@@ -0,0 +1,130 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.executorframework;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyedSerialExecutorTest {
+    private static final int KEYS = 16;
+    private static final int SUBMITTERS = 4;
+    private static final int TASKS_PER_SUBMITTER = 10_000;
+
+    /**
+     * Several threads submit numbered tasks for the same keys; every key
+     * sees the tasks of each submitter in order, never runs two tasks at
+     * once, and leaves no mailbox behind when it is done
+     */
+    @Test
+    public void testTasksOfOneKeyRunInOrderAndOneAtATime() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool);
+        final int[][] lastSeen = new int[KEYS][SUBMITTERS];
+        final AtomicInteger[] running = new AtomicInteger[KEYS];
+        final AtomicInteger violations = new AtomicInteger();
+        for (int k = 0; k < KEYS; k++) {
+            running[k] = new AtomicInteger();
+        }
+        final CountDownLatch done = new CountDownLatch(SUBMITTERS * TASKS_PER_SUBMITTER);
+        final CyclicBarrier startGate = new CyclicBarrier(SUBMITTERS);
+        final List<Thread> submitters = new ArrayList<>();
+        for (int s = 0; s < SUBMITTERS; s++) {
+            final int submitter = s;
+            final Thread thread = new Thread(() -> {
+                try {
+                    startGate.await();
+                } catch (final Exception e) {
+                    throw new AssertionError(e);
+                }
+                for (int i = 1; i <= TASKS_PER_SUBMITTER; i++) {
+                    final int key = i % KEYS;
+                    final int sequence = i;
+                    executor.execute(key, () -> {
+                        if (running[key].incrementAndGet() != 1) {
+                            violations.incrementAndGet();
+                        }
+                        // unsynchronized on purpose: tasks of one key must be serial
+                        if (lastSeen[key][submitter] >= sequence) {
+                            violations.incrementAndGet();
+                        }
+                        lastSeen[key][submitter] = sequence;
+                        running[key].decrementAndGet();
+                        done.countDown();
+                    });
+                }
+            });
+            submitters.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : submitters) {
+            thread.join();
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(violations.get()).isEqualTo(0);
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getActiveKeyCount()).isEqualTo(0);
+    }
+
+    /**
+     * A key whose task blocks does not hold up the other keys
+     */
+    @Test
+    public void testBlockedKeyDoesNotBlockOtherKeys() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        final KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherDone = new CountDownLatch(1);
+        executor.execute("blocked", () -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("blocked", otherDone::countDown);
+        executor.execute("other", otherDone::countDown);
+        assertThat(otherDone.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getActiveKeyCount()).isEqualTo(1);
+        release.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getActiveKeyCount()).isEqualTo(0);
+    }
+
+    /**
+     * A task that throws an Error kills its pool thread, but the tasks
+     * queued behind it for the same key still run
+     */
+    @Test
+    public void testErrorDoesNotStrandTheKey() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(1);
+        final KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(pool);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch nextDone = new CountDownLatch(1);
+        executor.execute("key", () -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute("key", () -> {
+            throw new AssertionError("expected by the test");
+        });
+        executor.execute("key", nextDone::countDown);
+        release.countDown();
+        assertThat(nextDone.await(10, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getActiveKeyCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,109 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.findingparalelism.timedtasks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Useful work per CPU-second under overload: FIFO pool versus DeadlineExecutor
+ *
+ * Tasks of TASK_MILLIS of computation arrive twice as fast as the workers
+ * can run them, each with a time budget between MIN_BUDGET_MILLIS and
+ * MAX_BUDGET_MILLIS. A task is useful only if it finishes within its
+ * budget. The FIFO pool runs every task, however late, so its queue and
+ * the share of late tasks grow for the whole run; DeadlineExecutor runs
+ * the most urgent task first and drops the ones that have expired.
+ *
+ * CPU time is the CPU time of the whole process from the first
+ * submission until the last task has finished or expired.
+ */
+public class DeadlineExecutorBenchmark {
+    private static final int N_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long TASK_MILLIS = 1;
+    private static final long MIN_BUDGET_MILLIS = 5;
+    private static final long MAX_BUDGET_MILLIS = 50;
+    private static final long RUN_MILLIS = 3000;
+
+    private static final com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    private interface Submitter {
+        void submit(Runnable task, long budgetNanos);
+
+        void drain() throws InterruptedException;
+    }
+
+    private static Submitter fifo() {
+        final ExecutorService pool = Executors.newFixedThreadPool(N_THREADS);
+        return new Submitter() {
+            @Override
+            public void submit(final Runnable task, final long budgetNanos) {
+                pool.execute(task);
+            }
+
+            @Override
+            public void drain() throws InterruptedException {
+                pool.shutdown();
+                pool.awaitTermination(1, TimeUnit.HOURS);
+            }
+        };
+    }
+
+    private static Submitter edf() {
+        final DeadlineExecutor executor = new DeadlineExecutor(N_THREADS);
+        return new Submitter() {
+            @Override
+            public void submit(final Runnable task, final long budgetNanos) {
+                executor.submit(() -> {
+                    task.run();
+                    return null;
+                }, null, budgetNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void drain() throws InterruptedException {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.HOURS);
+            }
+        };
+    }
+
+    private static void run(final String name, final Submitter submitter) throws InterruptedException {
+        final LongAdder onTime = new LongAdder();
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(TASK_MILLIS) / (2 * N_THREADS);
+        final long cpuStart = os.getProcessCpuTime();
+        final long start = System.nanoTime();
+        long submitted = 0;
+        for (long next = start; next - start < TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS); next += intervalNanos) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            final long budget = TimeUnit.MILLISECONDS.toNanos(
+                    ThreadLocalRandom.current().nextLong(MIN_BUDGET_MILLIS, MAX_BUDGET_MILLIS + 1));
+            final long deadline = next + budget;
+            submitter.submit(() -> {
+                final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TASK_MILLIS);
+                while (System.nanoTime() < end) {
+                    // compute
+                }
+                if (System.nanoTime() - deadline <= 0) {
+                    onTime.increment();
+                }
+            }, budget);
+            submitted++;
+        }
+        submitter.drain();
+        final double cpuSeconds = (os.getProcessCpuTime() - cpuStart) / 1e9;
+        System.out.printf("%s\tsubmitted=%d\ton time=%d\tCPU=%.2fs\ton time per CPU-second=%.1f%n",
+                          name, submitted, onTime.sum(), cpuSeconds, onTime.sum() / cpuSeconds);
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        for (int i = 0; i < 2; i++) {
+            run("FIFO", fifo());
+            run("EDF", edf());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.findingparalelism.timedtasks;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeadlineExecutorTest {
+
+    /**
+     * While the only worker is busy, tasks queue up; they then run in
+     * deadline order, not in submission order
+     */
+    @Test
+    public void testQueuedTasksRunEarliestDeadlineFirst() throws Exception {
+        final DeadlineExecutor executor = new DeadlineExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            release.await();
+            return true;
+        }, false, 10, TimeUnit.SECONDS);
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final Future<?> last = executor.submit(() -> order.add(3), false, 9, TimeUnit.SECONDS);
+        executor.submit(() -> order.add(1), false, 7, TimeUnit.SECONDS);
+        executor.submit(() -> order.add(2), false, 8, TimeUnit.SECONDS);
+        release.countDown();
+        last.get();
+        assertThat(order).containsExactly(1, 2, 3);
+        executor.shutdownNow();
+    }
+
+    /**
+     * A task whose deadline passes in the queue completes with the timeout
+     * result at the deadline and is never run; a running task is
+     * interrupted
+     */
+    @Test
+    public void testExpiredTasksCompleteWithTimeoutResult() throws Exception {
+        final DeadlineExecutor executor = new DeadlineExecutor(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final Future<String> running = executor.submit(() -> {
+            try {
+                TimeUnit.SECONDS.sleep(10);
+                return "slept";
+            } catch (final InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+        }, "timeout", 50, TimeUnit.MILLISECONDS);
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Future<String> queued = executor.submit(() -> {
+            ran.set(true);
+            return "ran";
+        }, "timeout", 20, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+        assertThat(queued.get()).isEqualTo("timeout");
+        assertThat(running.get()).isEqualTo("timeout");
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran.get()).isFalse();
+        assertThat(interrupted.get()).isTrue();
+        assertThat(executor.getExpiredInQueueCount()).isEqualTo(1);
+        assertThat(executor.getExpiredRunningCount()).isEqualTo(1);
+        assertThat(executor.getCompletedCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,68 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter7.cancellationandshutdown.shutdown.loggingservice;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LaneLogWriterTest {
+    private static final int NPRODUCERS = 4;
+    private static final int NMESSAGES = 5000;
+
+    /**
+     * More messages per producer than fit into its lane, so producers block
+     * on full lanes and the logger thread wraps around every lane many
+     * times. StringWriter is backed by a StringBuffer, so reading it while
+     * the logger thread writes is safe.
+     */
+    @Test(timeout = 60000)
+    public void testEveryMessageIsWrittenInProducerOrder() throws Exception {
+        final StringWriter out = new StringWriter();
+        final LaneLogWriter logWriter = new LaneLogWriter(out);
+        logWriter.start();
+        final CyclicBarrier barrier = new CyclicBarrier(NPRODUCERS);
+        final Thread[] producers = new Thread[NPRODUCERS];
+        for (int p = 0; p < NPRODUCERS; p++) {
+            final int producer = p;
+            producers[p] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                        for (int i = 0; i < NMESSAGES; i++) {
+                            logWriter.log(producer + ":" + i);
+                        }
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            producers[p].start();
+        }
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        String[] lines = out.toString().split(System.lineSeparator());
+        while (lines.length < NPRODUCERS * NMESSAGES && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            lines = out.toString().split(System.lineSeparator());
+        }
+        assertThat(lines).hasSize(NPRODUCERS * NMESSAGES);
+
+        final int[] next = new int[NPRODUCERS];
+        for (final String line : lines) {
+            final String[] parts = line.split(":");
+            final int producer = Integer.parseInt(parts[0]);
+            assertThat(Integer.parseInt(parts[1])).as("message of producer %d", producer).isEqualTo(next[producer]);
+            next[producer]++;
+        }
+        for (int p = 0; p < NPRODUCERS; p++) {
+            assertThat(next[p]).isEqualTo(NMESSAGES);
+        }
+    }
+}
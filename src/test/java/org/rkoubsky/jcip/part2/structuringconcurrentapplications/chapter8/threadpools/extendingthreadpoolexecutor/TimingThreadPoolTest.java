@@ -0,0 +1,101 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.extendingthreadpoolexecutor;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingThreadPoolTest {
+    /**
+     * The pools are sized for one processor whatever the host has, so that
+     * the initial size 1 is below the maximum and a single busy thread
+     * cannot be slowed down by the other pool threads
+     */
+    private static final int N_CPU = 1;
+
+    /**
+     * Tasks that spend nearly all their time sleeping have a large W/C, so
+     * the pool grows to its maximum
+     */
+    @Test
+    public void testBlockingTasksGrowThePool() throws InterruptedException {
+        final TimingThreadPool pool = new TimingThreadPool(1, 8, N_CPU, 1.0, 20, TimeUnit.MILLISECONDS);
+        final Runnable sleeper = () -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(5);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        for (int i = 0; i < 400; i++) {
+            pool.execute(sleeper);
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(pool.isAdaptive()).isTrue();
+        assertThat(pool.getWaitComputeRatio()).isGreaterThan(1.0);
+        assertThat(pool.getRecommendedPoolSize()).isEqualTo(8);
+        assertThat(pool.getResizeCount()).isGreaterThanOrEqualTo(1);
+        assertThat(pool.getLastResizeTo()).isEqualTo(8);
+        assertThat(pool.getRunTimeHistogram(sleeper.getClass()).getCount()).isEqualTo(400);
+        assertThat(pool.getQueueWaitHistogram(sleeper.getClass()).getCount()).isEqualTo(400);
+    }
+
+    /**
+     * CPU-bound tasks have W/C close to 0, so the pool stays at
+     * N_cpu * U_cpu threads
+     */
+    @Test
+    public void testCpuBoundTasksKeepThePoolAtCpuCount() throws InterruptedException {
+        final TimingThreadPool pool = new TimingThreadPool(1, 8, N_CPU, 1.0, 20, TimeUnit.MILLISECONDS);
+        final Runnable spinner = () -> {
+            final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2);
+            while (System.nanoTime() < end) {
+                // busy
+            }
+        };
+        for (int i = 0; i < 200; i++) {
+            pool.execute(spinner);
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(pool.getCorePoolSize()).isLessThanOrEqualTo(2 * N_CPU);
+    }
+
+    /**
+     * A task passed to "execute" waits in the queue wrapped in a
+     * TimedRunnable, but "remove" still finds it
+     */
+    @Test
+    public void testRemoveFindsWrappedTask() throws InterruptedException {
+        final TimingThreadPool pool = new TimingThreadPool();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Runnable blocker = () -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        pool.execute(blocker);
+        pool.execute(blocker);
+        final Runnable queued = () -> ran.set(true);
+        pool.execute(queued);
+
+        assertThat(pool.getQueue()).hasSize(1);
+        assertThat(pool.remove(queued)).isTrue();
+        assertThat(pool.getQueue()).isEmpty();
+        assertThat(pool.remove(queued)).isFalse();
+
+        release.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(ran.get()).isFalse();
+    }
+}
@@ -0,0 +1,64 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.parallelizingrecursivealgorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One task per element versus chunked ranges for a cheap loop body
+ *
+ * Each element costs a few tens of nanoseconds. With one Runnable per
+ * element the executor's queue is the bottleneck; the chunked loop runs
+ * ranges of thousands of elements per fork-join task.
+ */
+public class ParallelLoopBenchmark {
+    private static final int SIZE = 2_000_000;
+    private static final int WORK = 20;
+
+    private static class Cheap extends TransformingSequential {
+        private final LongAdder sink = new LongAdder();
+
+        @Override
+        public void process(final Element e) {
+            long x = e.hashCode();
+            for (int i = 0; i < WORK; i++) {
+                x ^= x << 13;
+                x ^= x >>> 7;
+                x ^= x << 17;
+            }
+            if (x == 0) {
+                this.sink.increment();
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final int nThreads = Runtime.getRuntime().availableProcessors();
+        final List<TransformingSequential.Element> elements = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            elements.add(new TransformingSequential.Element() {
+            });
+        }
+        final Cheap loop = new Cheap();
+        final ForkJoinPool pool = new ForkJoinPool(nThreads);
+        System.out.println("per-element tasks (ms)\tchunked (ms)");
+        for (int round = 0; round < 5; round++) {
+            final ExecutorService exec = Executors.newFixedThreadPool(nThreads);
+            long start = System.nanoTime();
+            loop.processInParallel(exec, elements);
+            exec.shutdown();
+            exec.awaitTermination(1, TimeUnit.HOURS);
+            final long perElement = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            loop.processInParallel(pool, elements);
+            final long chunked = System.nanoTime() - start;
+            System.out.printf("%.1f\t%.1f%n", perElement / 1e6, chunked / 1e6);
+        }
+        pool.shutdown();
+    }
+}
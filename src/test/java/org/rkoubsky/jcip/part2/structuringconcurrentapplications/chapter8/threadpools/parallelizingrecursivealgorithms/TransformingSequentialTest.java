@@ -0,0 +1,113 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.parallelizingrecursivealgorithms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransformingSequentialTest {
+    private static final int SIZE = 200_000;
+
+    @Test
+    public void testChunkedLoopProcessesEveryElementOnce() {
+        final AtomicIntegerArray processed = new AtomicIntegerArray(SIZE);
+        final TransformingSequential loop = new Counting(processed);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        assertThat(loop.processInParallel(pool, elements(SIZE), (e) -> false)).isFalse();
+        for (int i = 0; i < SIZE; i++) {
+            assertThat(processed.get(i)).isEqualTo(1);
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testChunkedLoopStopsEarly() {
+        final AtomicIntegerArray processed = new AtomicIntegerArray(SIZE);
+        final TransformingSequential loop = new Counting(processed);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final AtomicInteger seen = new AtomicInteger();
+        assertThat(loop.processInParallel(pool, elements(SIZE), (e) -> seen.incrementAndGet() == 1000)).isTrue();
+        assertThat(seen.get()).isLessThan(SIZE);
+        pool.shutdown();
+    }
+
+    /**
+     * The fork-join traversal returns the same results, in the same order,
+     * as the sequential one
+     */
+    @Test
+    public void testForkJoinTraversalMatchesSequential() {
+        final List<TransformingSequential.Node<Integer>> roots = new ArrayList<>();
+        final AtomicInteger ids = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            roots.add(tree(ids, 9));
+        }
+        final TransformingSequential traversal = new Counting(null);
+        final List<Integer> expected = new ArrayList<>();
+        traversal.sequentialRecursive(roots, expected);
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        assertThat(traversal.parallelRecursive(pool, roots)).isEqualTo(expected);
+        assertThat(expected).hasSize(ids.get());
+        assertThat(ids.get()).isGreaterThan(1000);
+        pool.shutdown();
+    }
+
+    /**
+     * A tree where every inner node has between 1 and 3 children
+     */
+    private static TransformingSequential.Node<Integer> tree(final AtomicInteger ids, final int depth) {
+        final int id = ids.getAndIncrement();
+        final List<TransformingSequential.Node<Integer>> children = new ArrayList<>();
+        if (depth > 0) {
+            for (int i = 0; i < 1 + id % 3; i++) {
+                children.add(tree(ids, depth - 1));
+            }
+        }
+        return new TransformingSequential.Node<Integer>() {
+            @Override
+            public Integer compute() {
+                return id;
+            }
+
+            @Override
+            public List<TransformingSequential.Node<Integer>> getChildren() {
+                return children;
+            }
+        };
+    }
+
+    private static List<TransformingSequential.Element> elements(final int size) {
+        final List<TransformingSequential.Element> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(new Indexed(i));
+        }
+        return elements;
+    }
+
+    private static class Indexed implements TransformingSequential.Element {
+        private final int index;
+
+        Indexed(final int index) {
+            this.index = index;
+        }
+    }
+
+    private static class Counting extends TransformingSequential {
+        private final AtomicIntegerArray processed;
+
+        Counting(final AtomicIntegerArray processed) {
+            this.processed = processed;
+        }
+
+        @Override
+        public void process(final Element e) {
+            this.processed.incrementAndGet(((Indexed) e).index);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.saturationpolicies;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveBoundedExecutorTest {
+
+    @Test
+    public void testAimdBacksOffOnFailuresAndGrowsOnSuccess() {
+        final AimdLimit limit = new AimdLimit(20, 2, 100, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(1), 20, true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(2);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(1), limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(12);
+        limit.onSample(TimeUnit.MILLISECONDS.toNanos(50), 12, false);
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    /**
+     * A simulated downstream that serves 10 requests at a time without
+     * queueing: beyond that, latency grows with the concurrency. The limit
+     * settles near 10 instead of growing to the maximum, and stays there
+     * across the probes.
+     */
+    @Test
+    public void testGradientSettlesNearTheDownstreamCapacity() {
+        final GradientLimit limit = new GradientLimit(5, 1, 1000);
+        for (int i = 0; i < 5500; i++) {
+            final int concurrency = limit.getLimit();
+            final long latency = TimeUnit.MILLISECONDS.toNanos(1) * Math.max(10, concurrency) / 10;
+            limit.onSample(latency, concurrency, false);
+        }
+        assertThat(limit.getLimit()).isBetween(10, 25);
+    }
+
+    @Test
+    public void testGradientGrowsWhileLatencyIsFlat() {
+        final GradientLimit limit = new GradientLimit(10, 1, 200);
+        for (int i = 0; i < 900; i++) {
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(1), limit.getLimit(), false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(200);
+    }
+
+    @Test
+    public void testSubmissionBeyondTheLimitIsRejectedOrTimesOut() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        final AdaptiveBoundedExecutor executor =
+                new AdaptiveBoundedExecutor(pool, new AimdLimit(2, 1, 10, 1, TimeUnit.MINUTES));
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        assertThat(executor.trySubmitTask(blocked)).isTrue();
+        assertThat(executor.trySubmitTask(blocked)).isTrue();
+        assertThat(executor.getInFlight()).isEqualTo(2);
+        assertThat(executor.trySubmitTask(blocked)).isFalse();
+        assertThat(executor.submitTask(blocked, 20, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(executor.getRejectedCount()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(executor.submitTask(() -> { }, 10, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getInFlight()).isEqualTo(0);
+    }
+}
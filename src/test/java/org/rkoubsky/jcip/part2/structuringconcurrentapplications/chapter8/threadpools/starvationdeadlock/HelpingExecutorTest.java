@@ -0,0 +1,94 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter8.threadpools.starvationdeadlock;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HelpingExecutorTest {
+
+    /**
+     * RenderPageTask deadlocks in a single-threaded executor; with a
+     * single-threaded HelpingExecutor it completes
+     */
+    @Test
+    public void testRenderPageTaskCompletesOnSingleThread() throws Exception {
+        final ThreadDeadLock deadLock = new ThreadDeadLock();
+        deadLock.exec.shutdown();
+        deadLock.exec = new HelpingExecutor(1);
+        final Future<String> page = deadLock.exec.submit(deadLock.new RenderPageTask());
+        assertThat(page.get(10, TimeUnit.SECONDS)).isEqualTo("");
+        deadLock.exec.shutdown();
+    }
+
+    /**
+     * A recursive fan-out/fan-in many levels deeper than the pool has
+     * threads
+     */
+    @Test
+    public void testNestedFanOutCompletesOnSmallPool() throws Exception {
+        final HelpingExecutor exec = new HelpingExecutor(2);
+        assertThat(exec.submit(new Fibonacci(exec, 16)).get(30, TimeUnit.SECONDS)).isEqualTo(987);
+        exec.shutdown();
+        assertThat(exec.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * X waits for A, which is running on the other thread, while Z, which
+     * waits for X, is queued. A waiting thread must not pick up Z: Z would
+     * then wait for X lower on its own stack. A plain pool of two threads
+     * completes this, and so must HelpingExecutor.
+     */
+    @Test
+    public void testWaiterDoesNotRunUnrelatedTaskThatWaitsForIt() throws Exception {
+        final HelpingExecutor exec = new HelpingExecutor(2);
+        final CountDownLatch aStarted = new CountDownLatch(1);
+        final CountDownLatch releaseA = new CountDownLatch(1);
+        final CountDownLatch zQueued = new CountDownLatch(1);
+        final Future<String> a = exec.submit(() -> {
+            aStarted.countDown();
+            releaseA.await();
+            return "a";
+        });
+        assertThat(aStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        final AtomicReference<Future<String>> x = new AtomicReference<>();
+        x.set(exec.submit(() -> {
+            zQueued.await();
+            return a.get() + "x";
+        }));
+        final Future<String> z = exec.submit(() -> x.get().get() + "z");
+        zQueued.countDown();
+        Thread.sleep(100); // let X reach a.get()
+        releaseA.countDown();
+
+        assertThat(z.get(3, TimeUnit.SECONDS)).isEqualTo("axz");
+        exec.shutdown();
+        assertThat(exec.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static class Fibonacci implements Callable<Integer> {
+        private final ExecutorService exec;
+        private final int n;
+
+        Fibonacci(final ExecutorService exec, final int n) {
+            this.exec = exec;
+            this.n = n;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            if (this.n <= 1) {
+                return this.n;
+            }
+            final Future<Integer> first = this.exec.submit(new Fibonacci(this.exec, this.n - 1));
+            final Future<Integer> second = this.exec.submit(new Fibonacci(this.exec, this.n - 2));
+            return first.get() + second.get();
+        }
+    }
+}
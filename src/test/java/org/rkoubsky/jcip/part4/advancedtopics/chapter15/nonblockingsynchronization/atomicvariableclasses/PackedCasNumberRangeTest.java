@@ -0,0 +1,115 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.atomicvariableclasses;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class PackedCasNumberRangeTest {
+    private static final int NROUNDS = 10000;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @Test
+    public void testSetBoundsAndContains() {
+        final PackedCasNumberRange range = new PackedCasNumberRange();
+        range.setUpper(10);
+        range.setLower(-5);
+        assertThat(range.getLower()).isEqualTo(-5);
+        assertThat(range.getUpper()).isEqualTo(10);
+        assertThat(range.contains(-5)).isTrue();
+        assertThat(range.contains(10)).isTrue();
+        assertThat(range.contains(-6)).isFalse();
+        assertThat(range.contains(11)).isFalse();
+
+        range.setRange(20, 30);
+        assertThat(range.getLower()).isEqualTo(20);
+        assertThat(range.getUpper()).isEqualTo(30);
+        assertThat(range.contains(10)).isFalse();
+
+        range.setRange(Integer.MIN_VALUE, -1);
+        assertThat(range.getLower()).isEqualTo(Integer.MIN_VALUE);
+        assertThat(range.getUpper()).isEqualTo(-1);
+        assertThat(range.contains(0)).isFalse();
+    }
+
+    @Test
+    public void testSettersRejectBreakingTheInvariant() {
+        final PackedCasNumberRange range = new PackedCasNumberRange();
+        range.setRange(0, 10);
+        try {
+            range.setLower(11);
+            fail();
+        } catch (final IllegalArgumentException expected) {
+        }
+        try {
+            range.setUpper(-1);
+            fail();
+        } catch (final IllegalArgumentException expected) {
+        }
+        try {
+            range.setRange(5, 4);
+            fail();
+        } catch (final IllegalArgumentException expected) {
+        }
+        assertThat(range.getLower()).isEqualTo(0);
+        assertThat(range.getUpper()).isEqualTo(10);
+    }
+
+    /**
+     * The race that breaks NumberRange: starting from (0, 10), one thread
+     * sets the lower bound to 5 while another sets the upper bound to 4.
+     * Each is valid on its own, so with check-then-act both could succeed
+     * and leave (5, 4); with CAS exactly one of them must fail.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentSettersNeverBreakTheInvariant() throws Exception {
+        final PackedCasNumberRange range = new PackedCasNumberRange();
+        final CyclicBarrier barrier = new CyclicBarrier(2, () -> {
+            // Runs once both threads finished the previous round
+            if (range.getLower() > range.getUpper()) {
+                throw new AssertionError("lower > upper");
+            }
+            range.setRange(0, 10);
+        });
+        final Future<Integer> lowerFailures = this.pool.submit(() -> {
+            int failures = 0;
+            for (int i = 0; i < NROUNDS; i++) {
+                barrier.await();
+                try {
+                    range.setLower(5);
+                } catch (final IllegalArgumentException e) {
+                    failures++;
+                }
+            }
+            barrier.await();
+            return failures;
+        });
+        final Future<Integer> upperFailures = this.pool.submit(() -> {
+            int failures = 0;
+            for (int i = 0; i < NROUNDS; i++) {
+                barrier.await();
+                try {
+                    range.setUpper(4);
+                } catch (final IllegalArgumentException e) {
+                    failures++;
+                }
+            }
+            barrier.await();
+            return failures;
+        });
+        assertThat(lowerFailures.get(30, TimeUnit.SECONDS) + upperFailures.get(30, TimeUnit.SECONDS))
+                .isEqualTo(NROUNDS);
+    }
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.cas;
+
+import org.rkoubsky.jcip.part1.fundamentals.chapter4.composingobjects.classdesign.Counter;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.BarrierTimer;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How the counters degrade with the number of threads
+ *
+ * Every thread increments a shared counter; the run is timed with a
+ * barrier-based timer as in TimedPutTakeTest and reported in ns per
+ * increment (of wall-clock time, so perfect scaling would divide it by
+ * the number of threads, up to N_cpu).
+ *
+ *  - {@link Counter}: Java monitor pattern
+ *  - {@link CasCounter}: CAS simulated with synchronized methods
+ *  - {@link AtomicCasCounter}: hardware CAS on a single variable
+ *  - {@link StripedCounter}: hardware CAS spread over cells
+ */
+public class CounterScalabilityBenchmark {
+    private static final ExecutorService pool = Executors.newCachedThreadPool();
+    private static final int INCREMENTS_PER_THREAD = 1000000;
+
+    private final Runnable increment;
+    private final int nThreads;
+    private final BarrierTimer timer = new BarrierTimer();
+    private final CyclicBarrier barrier;
+
+    public CounterScalabilityBenchmark(final Runnable increment, final int nThreads) {
+        this.increment = increment;
+        this.nThreads = nThreads;
+        this.barrier = new CyclicBarrier(nThreads + 1, this.timer);
+    }
+
+    public long nsPerIncrement() throws Exception {
+        this.timer.clear();
+        for (int i = 0; i < this.nThreads; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CounterScalabilityBenchmark.this.barrier.await();
+                        for (int j = INCREMENTS_PER_THREAD; j > 0; --j) {
+                            CounterScalabilityBenchmark.this.increment.run();
+                        }
+                        CounterScalabilityBenchmark.this.barrier.await();
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        this.barrier.await(); // cycle 1: wait for all threads to be ready
+        this.barrier.await(); // cycle 2: wait for all threads to finish
+        return this.timer.getTime() / (this.nThreads * (long) INCREMENTS_PER_THREAD);
+    }
+
+    private static long measure(final Runnable increment, final int nThreads) throws Exception {
+        new CounterScalabilityBenchmark(increment, nThreads).nsPerIncrement(); // warmup
+        return new CounterScalabilityBenchmark(increment, nThreads).nsPerIncrement();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Threads\tCounter\tCasCounter\tAtomicCasCounter\tStripedCounter (ns/increment)");
+        for (int n = 1; n <= maxThreads; n *= 2) {
+            final Counter monitor = new Counter();
+            final CasCounter simulated = new CasCounter();
+            final AtomicCasCounter atomic = new AtomicCasCounter();
+            final StripedCounter striped = new StripedCounter();
+            System.out.println(n
+                    + "\t" + measure(monitor::increment, n)
+                    + "\t" + measure(simulated::increment, n)
+                    + "\t" + measure(atomic::increment, n)
+                    + "\t" + measure(striped::increment, n));
+        }
+        pool.shutdown();
+    }
+}
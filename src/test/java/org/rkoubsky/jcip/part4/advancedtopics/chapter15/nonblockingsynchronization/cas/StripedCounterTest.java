@@ -0,0 +1,81 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.cas;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StripedCounterTest {
+    private static final int NTHREADS = 16;
+    private static final int INCREMENTS_PER_THREAD = 100000;
+    private static final int CHUNK = 1024;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    /**
+     * Every thread crosses dozens of chunk boundaries, and contended cells
+     * move threads around, so increments race both on the counts and on the
+     * limits of the cells.
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentIncrementsAreAllCounted() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        final CyclicBarrier barrier = new CyclicBarrier(NTHREADS);
+        final List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < NTHREADS; i++) {
+            results.add(this.pool.submit(() -> {
+                barrier.await();
+                for (int j = 0; j < INCREMENTS_PER_THREAD; j++) {
+                    counter.increment();
+                }
+                return null;
+            }));
+        }
+        for (final Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        assertThat(counter.getValue()).isEqualTo((long) NTHREADS * INCREMENTS_PER_THREAD);
+    }
+
+    @Test
+    public void testIncrementsAcrossChunkBoundary() {
+        final StripedCounter counter = new StripedCounter();
+        for (int i = 0; i < CHUNK + 1; i++) {
+            counter.increment();
+        }
+        assertThat(counter.getValue()).isEqualTo(CHUNK + 1);
+    }
+
+    /**
+     * The last chunk is smaller than CHUNK; once it is used up, the budget
+     * is exhausted and the next increment fails without changing the value.
+     */
+    @Test
+    public void testIncrementFailsOnceBudgetIsExhausted() {
+        final long budget = 2 * CHUNK + 10;
+        final StripedCounter counter = new StripedCounter(budget);
+        for (int i = 0; i < budget; i++) {
+            counter.increment();
+        }
+        assertThat(counter.getValue()).isEqualTo(budget);
+        try {
+            counter.increment();
+            fail();
+        } catch (final IllegalStateException expected) {
+        }
+        assertThat(counter.getValue()).isEqualTo(budget);
+    }
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+}
@@ -0,0 +1,203 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.junit.After;
+import org.junit.Test;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.IntBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class BlockingLinkedQueueTest {
+    private static final long LOCKUP_DETECT_TIMEOUT = 1000;
+    private static final int CAPACITY = 10;
+    private static final int MAX_WAITERS = 18;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @Test
+    public void testPollPeekAndDrainInFifoOrder() {
+        final LinkedQueue<Integer> queue = new LinkedQueue<>();
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.peek()).isNull();
+        for (int i = 0; i < 5; i++) {
+            queue.put(i);
+        }
+        assertThat(queue.size()).isEqualTo(5);
+        assertThat(queue.peek()).isEqualTo(0);
+        assertThat(queue.poll()).isEqualTo(0);
+
+        final List<Integer> drained = new ArrayList<>();
+        assertThat(queue.drainTo(drained, 3)).isEqualTo(3);
+        assertThat(drained).containsExactly(1, 2, 3);
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.poll()).isEqualTo(4);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    /**
+     * The collection accepts two elements and then throws; the rejected
+     * element goes back to the tail of the LinkedQueue
+     */
+    @Test
+    public void testLinkedQueueDrainToRestoresTheElementTheCollectionRejects() {
+        final LinkedQueue<Integer> queue = new LinkedQueue<>();
+        for (int i = 0; i < 5; i++) {
+            queue.put(i);
+        }
+        final List<Integer> drained = rejectingAfter(2);
+        try {
+            queue.drainTo(drained, 5);
+            fail();
+        } catch (final IllegalStateException expected) {
+        }
+        assertThat(drained).containsExactly(0, 1);
+        assertThat(queue.drainTo(new ArrayList<>(), 5)).isEqualTo(3);
+    }
+
+    @Test
+    public void testDrainToNullTakesNothing() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        queue.put(0);
+        try {
+            queue.drainTo(null, 1);
+            fail();
+        } catch (final NullPointerException expected) {
+        }
+        assertThat(queue.remainingCapacity()).isEqualTo(CAPACITY - 1);
+        assertThat(queue.poll()).isEqualTo(0);
+    }
+
+    /**
+     * The collection accepts two elements and then throws; the slots of the
+     * two drained elements are freed, the rejected one stays counted, and a
+     * full queue accepts exactly two more puts
+     */
+    @Test
+    public void testDrainToKeepsCountWhenTheCollectionRejects() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            queue.put(i);
+        }
+        final List<Integer> drained = rejectingAfter(2);
+        try {
+            queue.drainTo(drained, CAPACITY);
+            fail();
+        } catch (final IllegalStateException expected) {
+        }
+        assertThat(drained).containsExactly(0, 1);
+        assertThat(queue.remainingCapacity()).isEqualTo(2);
+        assertThat(queue.offer(CAPACITY)).isTrue();
+        assertThat(queue.offer(CAPACITY + 1)).isTrue();
+        assertThat(queue.offer(CAPACITY + 2)).isFalse();
+        final List<Integer> rest = new ArrayList<>();
+        assertThat(queue.drainTo(rest)).isEqualTo(CAPACITY);
+        assertThat(rest).containsOnly(2, 3, 4, 5, 6, 7, 8, 9, CAPACITY, CAPACITY + 1);
+        assertThat(queue.remainingCapacity()).isEqualTo(CAPACITY);
+    }
+
+    private static List<Integer> rejectingAfter(final int accepted) {
+        return new ArrayList<Integer>() {
+            @Override
+            public boolean add(final Integer x) {
+                if (this.size() == accepted) {
+                    throw new IllegalStateException("full");
+                }
+                return super.add(x);
+            }
+        };
+    }
+
+    @Test
+    public void testOfferFailsWhenFull() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            queue.put(i);
+        }
+        assertThat(queue.offer(CAPACITY)).isFalse();
+        assertThat(queue.offer(CAPACITY, 10, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(queue.remainingCapacity()).isEqualTo(0);
+        assertThat(queue.take()).isEqualTo(0);
+        assertThat(queue.offer(CAPACITY)).isTrue();
+    }
+
+    @Test
+    public void testTakeBlocksWhenEmpty() {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        final Thread taker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                    fail();
+                } catch (final InterruptedException success) {
+                }
+            }
+        };
+        try {
+            taker.start();
+            Thread.sleep(LOCKUP_DETECT_TIMEOUT);
+            taker.interrupt();
+            taker.join(LOCKUP_DETECT_TIMEOUT);
+            assertFalse(taker.isAlive());
+        } catch (final Exception unexpected) {
+            fail();
+        }
+    }
+
+    @Test
+    public void testTimedOutPollsDoNotAccumulateWaiters() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        for (int i = 0; i < 5000; i++) {
+            assertThat(queue.poll(200, TimeUnit.MICROSECONDS)).isNull();
+        }
+        assertThat(queue.waiterCount()).isLessThanOrEqualTo(MAX_WAITERS);
+    }
+
+    /**
+     * A taker parked at the head of the waiter queue keeps the cancelled
+     * nodes of the timed-out polls from reaching the head by themselves.
+     */
+    @Test(timeout = 60000)
+    public void testTimedOutPollsBehindParkedTakerDoNotAccumulateWaiters() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        final Future<Integer> taken = this.pool.submit(queue::take);
+        while (queue.waiterCount() == 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertThat(queue.poll(200, TimeUnit.MICROSECONDS)).isNull();
+        }
+        assertThat(queue.waiterCount()).isLessThanOrEqualTo(MAX_WAITERS);
+        queue.put(42);
+        assertThat(taken.get(LOCKUP_DETECT_TIMEOUT, TimeUnit.MILLISECONDS)).isEqualTo(42);
+    }
+
+    @Test(timeout = 60000)
+    public void testPutTakeChecksums() throws Exception {
+        final BlockingLinkedQueue<Integer> queue = new BlockingLinkedQueue<>(CAPACITY);
+        PutTakeChecksums.assertPutSumEqualsTakeSum(new IntBuffer() {
+            @Override
+            public void put(final int x) throws InterruptedException {
+                queue.put(x);
+            }
+
+            @Override
+            public int take() throws InterruptedException {
+                return queue.take();
+            }
+        });
+        assertThat(queue.isEmpty()).isTrue();
+    }
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EliminationBackoffStackTest {
+    private static final int NTHREADS = 16;
+    private static final int NPAIRS = 100000;
+
+    @Test
+    public void testPushAndPopInLifoOrder() {
+        final EliminationBackoffStack<Integer> stack = new EliminationBackoffStack<>();
+        assertThat(stack.pop()).isNull();
+        for (int i = 0; i < 5; i++) {
+            stack.push(i);
+        }
+        for (int i = 4; i >= 0; i--) {
+            assertThat(stack.pop()).isEqualTo(i);
+        }
+        assertThat(stack.pop()).isNull();
+    }
+
+    /**
+     * Many more threads than processors alternate push and pop, so CAS
+     * failures on "top" send them into the elimination array, where a push
+     * handed over to a pop must be neither lost nor seen by a second pop.
+     */
+    @Test(timeout = 120000)
+    public void testConcurrentPushPopNeitherLosesNorDuplicates() throws Exception {
+        final EliminationBackoffStack<Integer> stack = new EliminationBackoffStack<>();
+        StackConservation.assertConserved(ops(stack), NTHREADS, NPAIRS);
+    }
+
+    /**
+     * Where CAS failures on "top" are rare (few processors), every fourth
+     * CAS fails anyway, so that threads keep meeting in the elimination
+     * array whenever one is preempted while waiting there.
+     */
+    @Test(timeout = 120000)
+    public void testEliminatedPairsNeitherLoseNorDuplicate() throws Exception {
+        final EliminationBackoffStack<Integer> stack =
+                new EliminationBackoffStack<>(() -> ThreadLocalRandom.current().nextInt(4) == 0);
+        StackConservation.assertConserved(ops(stack), NTHREADS, NPAIRS);
+        assertThat(stack.eliminations()).isGreaterThan(0L);
+    }
+
+    private static StackThroughputBenchmark.Stack ops(final EliminationBackoffStack<Integer> stack) {
+        return new StackThroughputBenchmark.Stack() {
+            @Override
+            public void push(final Integer item) {
+                stack.push(item);
+            }
+
+            @Override
+            public Integer pop() {
+                return stack.pop();
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.junit.Test;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.IntBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MpmcBoundedBufferTest {
+    @Test
+    public void testCapacityIsRoundedUpToPowerOfTwo() {
+        assertThat(new MpmcBoundedBuffer<Integer>(1).capacity()).isEqualTo(2);
+        assertThat(new MpmcBoundedBuffer<Integer>(10).capacity()).isEqualTo(16);
+        assertThat(new MpmcBoundedBuffer<Integer>(16).capacity()).isEqualTo(16);
+    }
+
+    @Test
+    public void testOfferAndPollWrapAroundInFifoOrder() {
+        final MpmcBoundedBuffer<Integer> buffer = new MpmcBoundedBuffer<>(4);
+        for (int lap = 0; lap < 3; lap++) {
+            assertThat(buffer.isEmpty()).isTrue();
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.offer(lap * 4 + i)).isTrue();
+            }
+            assertThat(buffer.isFull()).isTrue();
+            assertThat(buffer.offer(-1)).isFalse();
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.poll()).isEqualTo(lap * 4 + i);
+            }
+            assertThat(buffer.poll()).isNull();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testPutTakeChecksums() throws Exception {
+        final MpmcBoundedBuffer<Integer> buffer = new MpmcBoundedBuffer<>(10);
+        PutTakeChecksums.assertPutSumEqualsTakeSum(new IntBuffer() {
+            @Override
+            public void put(final int x) throws InterruptedException {
+                buffer.put(x);
+            }
+
+            @Override
+            public int take() throws InterruptedException {
+                return buffer.take();
+            }
+        });
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+}
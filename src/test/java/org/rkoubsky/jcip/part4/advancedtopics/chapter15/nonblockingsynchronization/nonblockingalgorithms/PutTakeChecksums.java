@@ -0,0 +1,74 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.IntBuffer;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.PutTakeTest;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingforcorrectness.testingsafety.XorShift;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The producer-consumer checksum program of {@link PutTakeTest}, for the
+ * buffers of this package
+ *
+ * PutTakeTest runs against the buffers of {@link IntBuffer.Mode}; the
+ * nonblocking queues here are adapted to IntBuffer and run through the same
+ * program: NPAIRS producers put pseudorandom ints generated by
+ * {@link XorShift}, NPAIRS consumers take as many, and the order-insensitive
+ * sums of both sides must match. With a small capacity, producers and
+ * consumers both end up waiting for each other, so a lost wakeup shows up
+ * as a hang.
+ */
+class PutTakeChecksums {
+    private PutTakeChecksums() {
+    }
+
+    static void assertPutSumEqualsTakeSum(final IntBuffer bb) throws Exception {
+        final ExecutorService pool = Executors.newCachedThreadPool();
+        final CyclicBarrier barrier = new CyclicBarrier(PutTakeTest.NPAIRS * 2 + 1);
+        final AtomicInteger putSum = new AtomicInteger(0);
+        final AtomicInteger takeSum = new AtomicInteger(0);
+        try {
+            for (int i = 0; i < PutTakeTest.NPAIRS; i++) {
+                pool.execute(() -> {
+                    try {
+                        int seed = (Thread.currentThread().hashCode() ^ (int) System.nanoTime());
+                        int sum = 0;
+                        barrier.await();
+                        for (int j = PutTakeTest.NTRIALS; j > 0; --j) {
+                            bb.put(seed);
+                            sum += seed;
+                            seed = XorShift.xorShift(seed);
+                        }
+                        putSum.getAndAdd(sum);
+                        barrier.await();
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                pool.execute(() -> {
+                    try {
+                        barrier.await();
+                        int sum = 0;
+                        for (int j = PutTakeTest.NTRIALS; j > 0; --j) {
+                            sum += bb.take();
+                        }
+                        takeSum.getAndAdd(sum);
+                        barrier.await();
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+            barrier.await(); // cycle 1: wait for all threads to be ready
+            barrier.await(); // cycle 2: wait for all threads to finish
+            assertThat(putSum.get()).isEqualTo(takeSum.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecyclingConcurrentStackTest {
+    private static final int NTHREADS = 16;
+    private static final int NPAIRS = 100000;
+    private static final int NITEMS = 32;
+
+    @Test
+    public void testPushAndPopInLifoOrderReusingNodes() {
+        final RecyclingConcurrentStack<Integer> stack = new RecyclingConcurrentStack<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < NITEMS; i++) {
+                stack.push(i);
+            }
+            for (int i = NITEMS - 1; i >= 0; i--) {
+                assertThat(stack.pop()).isEqualTo(i);
+            }
+            assertThat(stack.pop()).isNull();
+        }
+        assertThat(stack.allocatedNodes()).isEqualTo(NITEMS);
+    }
+
+    /**
+     * Nodes released by one thread are pushed again by others, so a node
+     * recycled while another thread still holds a stale reference to it is
+     * exactly the ABA case the versioned top must catch.
+     */
+    @Test(timeout = 120000)
+    public void testConcurrentPushPopNeitherLosesNorDuplicates() throws Exception {
+        final RecyclingConcurrentStack<Integer> stack = new RecyclingConcurrentStack<>();
+        StackConservation.assertConserved(new StackThroughputBenchmark.Stack() {
+            @Override
+            public void push(final Integer item) {
+                stack.push(item);
+            }
+
+            @Override
+            public Integer pop() {
+                return stack.pop();
+            }
+        }, NTHREADS, NPAIRS);
+        assertThat(stack.isEmpty()).isTrue();
+    }
+
+    /**
+     * Short-lived threads each leave their popped nodes in their own free
+     * list; without reclaiming those lists, every thread would allocate
+     * NITEMS new nodes.
+     */
+    @Test
+    public void testNodesOfTerminatedThreadsAreReused() throws Exception {
+        final RecyclingConcurrentStack<Integer> stack = new RecyclingConcurrentStack<>();
+        for (int t = 0; t < 10; t++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < NITEMS; i++) {
+                        stack.push(i);
+                    }
+                    for (int i = 0; i < NITEMS; i++) {
+                        stack.pop();
+                    }
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+        assertThat(stack.allocatedNodes()).isEqualTo(NITEMS);
+    }
+}
@@ -0,0 +1,98 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpscRingBufferTest {
+    private static final int CAPACITY = 16;
+    private static final int NTRIALS = 1000000;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @Test
+    public void testOfferAndPollWrapAroundInFifoOrder() {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(3);
+        assertThat(buffer.capacity()).isEqualTo(4);
+        for (int lap = 0; lap < 3; lap++) {
+            assertThat(buffer.isEmpty()).isTrue();
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.offer(lap * 4 + i)).isTrue();
+            }
+            assertThat(buffer.offer(-1)).isFalse();
+            for (int i = 0; i < 4; i++) {
+                assertThat(buffer.poll()).isEqualTo(lap * 4 + i);
+            }
+            assertThat(buffer.poll()).isNull();
+        }
+    }
+
+    /**
+     * With a small capacity the indices wrap around tens of thousands of
+     * times; a slot read before its element was published, or overwritten
+     * before it was consumed, shows up as a gap or a repeat in the sequence.
+     */
+    @Test(timeout = 60000)
+    public void testPutTakeKeepsSequenceOrder() throws Exception {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(CAPACITY);
+        final Future<?> producer = this.pool.submit(() -> {
+            for (int i = 0; i < NTRIALS; i++) {
+                buffer.put(i);
+            }
+            return null;
+        });
+        final Future<Integer> consumer = this.pool.submit(() -> {
+            for (int i = 0; i < NTRIALS; i++) {
+                final int x = buffer.take();
+                if (x != i) {
+                    return i;
+                }
+            }
+            return NTRIALS;
+        });
+        producer.get(30, TimeUnit.SECONDS);
+        assertThat(consumer.get(30, TimeUnit.SECONDS)).isEqualTo(NTRIALS);
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test(timeout = 60000)
+    public void testPutDrainKeepsSequenceOrder() throws Exception {
+        final SpscRingBuffer<Integer> buffer = new SpscRingBuffer<>(CAPACITY);
+        final Future<?> producer = this.pool.submit(() -> {
+            for (int i = 0; i < NTRIALS; i++) {
+                buffer.put(i);
+            }
+            return null;
+        });
+        final Future<List<Integer>> consumer = this.pool.submit(() -> {
+            final List<Integer> outOfOrder = new ArrayList<>();
+            final int[] next = {0};
+            while (next[0] < NTRIALS) {
+                if (buffer.drain((x) -> {
+                    if (x != next[0]) {
+                        outOfOrder.add(x);
+                    }
+                    next[0] = x + 1;
+                }, 5) == 0) {
+                    Thread.yield();
+                }
+            }
+            return outOfOrder;
+        });
+        producer.get(30, TimeUnit.SECONDS);
+        assertThat(consumer.get(30, TimeUnit.SECONDS)).isEmpty();
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @After
+    public void shutdown() {
+        this.pool.shutdownNow();
+    }
+}
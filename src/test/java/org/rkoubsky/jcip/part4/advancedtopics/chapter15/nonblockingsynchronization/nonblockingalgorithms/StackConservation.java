@@ -0,0 +1,66 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that a concurrent stack neither loses nor duplicates elements
+ *
+ * Every thread alternates pushing an element of its own and popping
+ * whatever is on top, as in StackThroughputBenchmark, so that pushes and
+ * pops from different threads constantly collide on "top". Each element
+ * is distinct, so instead of a checksum the popped elements (plus whatever
+ * is left on the stack at the end) are checked off in a BitSet: an element
+ * popped twice, or one that never comes back, fails the check.
+ */
+class StackConservation {
+    private StackConservation() {
+    }
+
+    static void assertConserved(final StackThroughputBenchmark.Stack stack, final int nThreads, final int nPairs)
+            throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        final CyclicBarrier barrier = new CyclicBarrier(nThreads);
+        final List<Future<List<Integer>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < nThreads; i++) {
+                final int first = i * nPairs;
+                results.add(pool.submit(() -> {
+                    final List<Integer> popped = new ArrayList<>(nPairs);
+                    barrier.await();
+                    for (int j = 0; j < nPairs; j++) {
+                        stack.push(first + j);
+                        final Integer x = stack.pop();
+                        if (x != null) {
+                            popped.add(x);
+                        }
+                    }
+                    return popped;
+                }));
+            }
+            final BitSet seen = new BitSet(nThreads * nPairs);
+            for (final Future<List<Integer>> result : results) {
+                for (final Integer x : result.get(60, TimeUnit.SECONDS)) {
+                    assertThat(seen.get(x)).as("element %d popped twice", x).isFalse();
+                    seen.set(x);
+                }
+            }
+            Integer x;
+            while ((x = stack.pop()) != null) {
+                assertThat(seen.get(x)).as("element %d popped twice", x).isFalse();
+                seen.set(x);
+            }
+            assertThat(seen.cardinality()).isEqualTo(nThreads * nPairs);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
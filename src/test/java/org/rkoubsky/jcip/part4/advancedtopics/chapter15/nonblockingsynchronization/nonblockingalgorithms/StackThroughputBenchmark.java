@@ -0,0 +1,115 @@
+package org.rkoubsky.jcip.part4.advancedtopics.chapter15.nonblockingsynchronization.nonblockingalgorithms;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.BarrierTimer;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Throughput of {@link ConcurrentStack} versus {@link EliminationBackoffStack}
+ * and {@link RecyclingConcurrentStack}
+ *
+ * Every thread performs push/pop pairs on a shared stack; the whole run is
+ * timed with a barrier-based timer as in TimedPutTakeTest, and the result is
+ * reported as operations per microsecond for 1 to 2 * N_cpu threads.
+ */
+public class StackThroughputBenchmark {
+    private static final ExecutorService pool = Executors.newCachedThreadPool();
+    private static final int OPS_PER_THREAD = 1000000;
+    private static final Integer ITEM = 42;
+
+    interface Stack {
+        void push(Integer item);
+
+        Integer pop();
+    }
+
+    private final Stack stack;
+    private final int nThreads;
+    private final BarrierTimer timer = new BarrierTimer();
+    private final CyclicBarrier barrier;
+
+    public StackThroughputBenchmark(final Stack stack, final int nThreads) {
+        this.stack = stack;
+        this.nThreads = nThreads;
+        this.barrier = new CyclicBarrier(nThreads + 1, this.timer);
+    }
+
+    public double run() throws Exception {
+        this.timer.clear();
+        for (int i = 0; i < this.nThreads; i++) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        StackThroughputBenchmark.this.barrier.await();
+                        for (int j = OPS_PER_THREAD / 2; j > 0; --j) {
+                            StackThroughputBenchmark.this.stack.push(ITEM);
+                            StackThroughputBenchmark.this.stack.pop();
+                        }
+                        StackThroughputBenchmark.this.barrier.await();
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        this.barrier.await(); // cycle 1: wait for all threads to be ready
+        this.barrier.await(); // cycle 2: wait for all threads to finish
+        return (this.nThreads * (double) OPS_PER_THREAD) / (this.timer.getTime() / 1000.0);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        System.out.println("Threads\tConcurrentStack ops/us\tEliminationBackoffStack ops/us"
+                + "\tRecyclingConcurrentStack ops/us");
+        for (int n = 1; n <= maxThreads; n *= 2) {
+            final ConcurrentStack<Integer> treiber = new ConcurrentStack<>();
+            final EliminationBackoffStack<Integer> elimination = new EliminationBackoffStack<>();
+            final RecyclingConcurrentStack<Integer> recycling = new RecyclingConcurrentStack<>();
+            final Stack treiberOps = new Stack() {
+                @Override
+                public void push(final Integer item) {
+                    treiber.push(item);
+                }
+
+                @Override
+                public Integer pop() {
+                    return treiber.pop();
+                }
+            };
+            final Stack eliminationOps = new Stack() {
+                @Override
+                public void push(final Integer item) {
+                    elimination.push(item);
+                }
+
+                @Override
+                public Integer pop() {
+                    return elimination.pop();
+                }
+            };
+            final Stack recyclingOps = new Stack() {
+                @Override
+                public void push(final Integer item) {
+                    recycling.push(item);
+                }
+
+                @Override
+                public Integer pop() {
+                    return recycling.pop();
+                }
+            };
+            // The first run of each pair is a warmup
+            new StackThroughputBenchmark(treiberOps, n).run();
+            final double t = new StackThroughputBenchmark(treiberOps, n).run();
+            new StackThroughputBenchmark(eliminationOps, n).run();
+            final double e = new StackThroughputBenchmark(eliminationOps, n).run();
+            new StackThroughputBenchmark(recyclingOps, n).run();
+            final double r = new StackThroughputBenchmark(recyclingOps, n).run();
+            System.out.printf("%d\t%.2f\t%.2f\t%.2f%n", n, t, e, r);
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,148 @@
+package org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter6.taskexecution.executorframework;
+
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.AtomicLatencyHistogram;
+import org.rkoubsky.jcip.part2.structuringconcurrentapplications.chapter12.testingconcurrentprograms.testingperformance.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Platform thread per task versus a fixed pool versus virtual threads
+ *
+ * The server is the one of the chapter 6 examples with a request handler
+ * that blocks for BACKEND_MILLIS, as if it called a slow backend. All
+ * CONNECTIONS clients (10 000 by default, or the first argument) connect at
+ * once through a start gate and each sends one request:
+ *
+ *  - ThreadPerTaskExecutor starts 10 000 platform threads
+ *  - the fixed pool of TaskExecutionWebServer serves 100 at a time, so the
+ *    last requests wait for CONNECTIONS / 100 rounds of the backend
+ *  - VirtualThreadPerTaskExecutor serves all of them at once on a few
+ *    carrier threads
+ *
+ * The clients run in virtual threads in every case, so that only the
+ * server side changes. Reported are the time until all requests have
+ * completed, the request latency and the peak number of live platform
+ * threads. Each side holds a socket per connection, so the open file
+ * limit must exceed 2 * CONNECTIONS.
+ */
+public class WebServerBenchmark {
+    private static final long BACKEND_MILLIS = 100;
+    private static final int FIXED_POOL_SIZE = 100;
+    private static final int CLIENT_TIMEOUT_MILLIS = 60_000;
+
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public static void main(final String[] args) throws Exception {
+        final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        System.out.println("server\tconnections\telapsed (s)\terrors\tpeak threads\tlatency");
+        run("platform thread per task", new ThreadPerTaskExecutor(), connections);
+        final ExecutorService pool = Executors.newFixedThreadPool(FIXED_POOL_SIZE);
+        run("fixed pool (" + FIXED_POOL_SIZE + ")", pool, connections);
+        pool.shutdown();
+        run("virtual thread per task", new VirtualThreadPerTaskExecutor(), connections);
+    }
+
+    private static void run(final String name, final Executor exec, final int connections) throws Exception {
+        System.gc();
+        threadMXBean.resetPeakThreadCount();
+        try (ServerSocket server = new ServerSocket(0, connections, InetAddress.getLoopbackAddress())) {
+            final Thread acceptor = Thread.ofPlatform().start(() -> accept(server, exec));
+
+            final AtomicLatencyHistogram latency = new AtomicLatencyHistogram();
+            final LongAdder errors = new LongAdder();
+            final CountDownLatch startGate = new CountDownLatch(1);
+            final CountDownLatch endGate = new CountDownLatch(connections);
+            for (int i = 0; i < connections; i++) {
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        startGate.await();
+                        final long start = System.nanoTime();
+                        request(server.getLocalPort());
+                        latency.record(System.nanoTime() - start);
+                    } catch (final IOException | InterruptedException e) {
+                        errors.increment();
+                    } finally {
+                        endGate.countDown();
+                    }
+                });
+            }
+            final long start = System.nanoTime();
+            startGate.countDown();
+            endGate.await();
+            final long elapsed = System.nanoTime() - start;
+
+            final LatencyHistogram histogram = latency.snapshot();
+            System.out.printf("%s\t%d\t%.2f\t%d\t%d\t%s%n", name, connections, elapsed / 1e9, errors.sum(),
+                              threadMXBean.getPeakThreadCount(), histogram.summary(TimeUnit.MILLISECONDS));
+            server.close();
+            acceptor.join();
+        }
+    }
+
+    private static void accept(final ServerSocket server, final Executor exec) {
+        while (!server.isClosed()) {
+            try {
+                final Socket connection = server.accept();
+                exec.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleRequest(connection);
+                    }
+                });
+            } catch (final SocketException e) {
+                // server closed
+            } catch (final IOException e) {
+                // e.g. out of file descriptors; the client times out and counts an error
+                System.err.println(e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }
+    }
+
+    private static void handleRequest(final Socket connection) {
+        try (Socket c = connection) {
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+            in.readLine();
+            Thread.sleep(BACKEND_MILLIS);
+            final OutputStream out = c.getOutputStream();
+            out.write("OK\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } catch (final IOException e) {
+            // client gone
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void request(final int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(CLIENT_TIMEOUT_MILLIS);
+            final OutputStream out = socket.getOutputStream();
+            out.write("GET /\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            if (!"OK".equals(in.readLine())) {
+                throw new IOException("Unexpected response");
+            }
+        }
+    }
+}